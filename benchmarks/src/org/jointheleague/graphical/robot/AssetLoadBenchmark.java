@@ -0,0 +1,59 @@
+package org.jointheleague.graphical.robot;
+
+import javax.imageio.ImageIO;
+import java.awt.*;
+import java.awt.image.BufferedImage;
+import java.io.File;
+import java.io.IOException;
+
+/**
+ * Changes the image of 100 Robots to a large PNG file given by its URL, as a
+ * program that downloads the images of its Robots does, and reports how long
+ * the program is blocked by the calls and how long it takes until every
+ * Robot shows the new image. A local file stands in for the URL, so that the
+ * benchmark does not depend on the network.
+ * <p>
+ * Run with <code>java -Djava.awt.headless=true
+ * org.jointheleague.graphical.robot.AssetLoadBenchmark</code>.
+ * </p>
+ */
+public class AssetLoadBenchmark {
+
+    private static final int NUM_ROBOTS = 100;
+    private static final int IMAGE_SIZE = 1000;
+
+    public static void main(String[] args) throws Exception {
+        File file = File.createTempFile("robot", ".png");
+        try {
+            BufferedImage image = new BufferedImage(IMAGE_SIZE, IMAGE_SIZE, BufferedImage.TYPE_INT_ARGB);
+            Graphics2D g2 = image.createGraphics();
+            g2.setPaint(new GradientPaint(0, 0, Color.RED, IMAGE_SIZE, IMAGE_SIZE, Color.BLUE));
+            g2.fillOval(0, 0, IMAGE_SIZE, IMAGE_SIZE);
+            g2.dispose();
+            ImageIO.write(image, "png", file);
+            final String url = file.toURI().toURL().toString();
+
+            Robot[] robots = new Robot[NUM_ROBOTS];
+            for (int i = 0; i < NUM_ROBOTS; i++) {
+                robots[i] = new Robot(9 * i, 300);
+            }
+            long before = System.nanoTime();
+            for (Robot robot : robots) {
+                robot.changeRobot(url);
+            }
+            long blockedNanos = System.nanoTime() - before;
+            // the image of the last Robot is changed last
+            robots[NUM_ROBOTS - 1].changeRobotAsync(url).get();
+            long doneNanos = System.nanoTime() - before;
+
+            System.out.printf("Robots:                   %d%n", NUM_ROBOTS);
+            System.out.printf("Program blocked (ms):     %.1f%n", blockedNanos / 1e6);
+            System.out.printf("All images changed (ms):  %.0f%n", doneNanos / 1e6);
+        } catch (IOException e) {
+            e.printStackTrace();
+        } finally {
+            file.delete();
+        }
+        System.exit(0);
+    }
+}
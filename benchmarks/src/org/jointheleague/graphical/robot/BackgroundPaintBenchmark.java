@@ -0,0 +1,53 @@
+package org.jointheleague.graphical.robot;
+
+import javax.swing.*;
+import java.awt.*;
+import java.awt.image.BufferedImage;
+
+/**
+ * Paints the window repeatedly, with the default background and logo, and
+ * then with a large custom background image that has to be scaled to the
+ * window, and reports the time taken per frame. No Robot is shown and no
+ * ink is drawn, so that the time taken is the time taken by the background.
+ * <p>
+ * Run with <code>java -Djava.awt.headless=true
+ * org.jointheleague.graphical.robot.BackgroundPaintBenchmark</code>.
+ * </p>
+ */
+public class BackgroundPaintBenchmark {
+
+    private static final int NUM_FRAMES = 200;
+
+    public static void main(String[] args) throws Exception {
+        new Robot().hide();
+        RobotWindow window = RobotWindow.getInstance();
+        BufferedImage frame = new BufferedImage(window.getWidth(), window.getHeight(), BufferedImage.TYPE_INT_RGB);
+        System.out.printf("Default background (ms/frame): %.3f%n", paint(window, frame));
+
+        BufferedImage image = new BufferedImage(1600, 1200, BufferedImage.TYPE_INT_ARGB);
+        Graphics2D g2 = image.createGraphics();
+        g2.setPaint(new GradientPaint(0, 0, Color.ORANGE, 1600, 1200, new Color(0x800000ff, true)));
+        g2.fillRect(0, 0, 1600, 1200);
+        g2.dispose();
+        SwingUtilities.invokeAndWait(() -> window.setBackgroundImage(image));
+        System.out.printf("Custom background (ms/frame):  %.3f%n", paint(window, frame));
+        System.exit(0);
+    }
+
+    private static double paint(RobotWindow window, BufferedImage frame) throws Exception {
+        final long[] nanos = new long[1];
+        SwingUtilities.invokeAndWait(() -> {
+            Graphics2D g2 = frame.createGraphics();
+            for (int i = 0; i < NUM_FRAMES; i++) {
+                window.paintScene(g2); // warm up
+            }
+            long before = System.nanoTime();
+            for (int i = 0; i < NUM_FRAMES; i++) {
+                window.paintScene(g2);
+            }
+            nanos[0] = System.nanoTime() - before;
+            g2.dispose();
+        });
+        return nanos[0] / 1e6 / NUM_FRAMES;
+    }
+}
@@ -0,0 +1,81 @@
+package org.jointheleague.graphical.robot;
+
+import org.jointheleague.graphical.robot.curves.Drawable;
+import org.jointheleague.graphical.robot.curves.Line;
+
+import java.awt.*;
+import java.lang.management.ManagementFactory;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Measures the number of bytes allocated per frame when the EDT iterates over
+ * a Robot's committed drawables, comparing the {@link DrawableStore} with the
+ * defensive <code>ArrayList</code> copy that it replaces.
+ * <p>
+ * Run with <code>java -Djava.awt.headless=true
+ * org.jointheleague.graphical.robot.DrawableStoreAllocationBenchmark</code>.
+ * </p>
+ */
+public class DrawableStoreAllocationBenchmark {
+
+    private static final int NUM_DRAWABLES = 100_000;
+    private static final int NUM_FRAMES = 1_000;
+
+    private static final com.sun.management.ThreadMXBean THREAD_BEAN =
+            (com.sun.management.ThreadMXBean) ManagementFactory.getThreadMXBean();
+
+    public static void main(String[] args) {
+        DrawableStore store = new DrawableStore();
+        List<Drawable> list = new ArrayList<>();
+        for (int i = 0; i < NUM_DRAWABLES; i++) {
+            Line line = new Line(i, i, new float[]{i + 1, i + 1}, 1, Color.BLACK);
+            store.add(line, 0L);
+            list.add(line);
+        }
+        // warm up, so that the measured loops run compiled code
+        for (int i = 0; i < 10 * NUM_FRAMES; i++) {
+            iterateStore(store);
+            iterateCopy(list);
+        }
+
+        long visited = 0;
+        long before = allocatedBytes();
+        for (int i = 0; i < NUM_FRAMES; i++) {
+            visited += iterateStore(store);
+        }
+        long storeBytes = allocatedBytes() - before;
+
+        before = allocatedBytes();
+        for (int i = 0; i < NUM_FRAMES; i++) {
+            visited += iterateCopy(list);
+        }
+        long copyBytes = allocatedBytes() - before;
+
+        System.out.printf("Drawables per frame:             %d%n", NUM_DRAWABLES);
+        System.out.printf("DrawableStore, bytes per frame:  %d%n", storeBytes / NUM_FRAMES);
+        System.out.printf("ArrayList copy, bytes per frame: %d%n", copyBytes / NUM_FRAMES);
+        System.out.printf("(visited %d drawables)%n", visited);
+    }
+
+    private static int iterateStore(DrawableStore store) {
+        int count = 0;
+        final int size = store.size();
+        for (int i = 0; i < size; i++) {
+            if (store.getStamp(i) == 0L) count++;
+        }
+        return count;
+    }
+
+    private static int iterateCopy(List<Drawable> list) {
+        int count = 0;
+        for (Drawable drawable : new ArrayList<>(list)) {
+            if (drawable != null) count++;
+        }
+        return count;
+    }
+
+    private static long allocatedBytes() {
+        return THREAD_BEAN.getThreadAllocatedBytes(Thread.currentThread().getId());
+    }
+}
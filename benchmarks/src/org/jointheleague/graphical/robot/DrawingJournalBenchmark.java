@@ -0,0 +1,70 @@
+package org.jointheleague.graphical.robot;
+
+import org.jointheleague.graphical.robot.curves.Line;
+
+import java.awt.*;
+import java.awt.image.BufferedImage;
+import java.io.File;
+import java.io.IOException;
+
+/**
+ * Measures the heap retained by a {@link DrawableStore} holding a long
+ * drawing, with and without a {@link DrawingJournal}, and the time taken to
+ * draw all of its segments, as the window's ink layer does when it is
+ * rebuilt.
+ * <p>
+ * Run with <code>java -Djava.awt.headless=true
+ * org.jointheleague.graphical.robot.DrawingJournalBenchmark</code>.
+ * </p>
+ */
+public class DrawingJournalBenchmark {
+
+    private static final int NUM_SEGMENTS = 1_000_000;
+
+    public static void main(String[] args) throws IOException {
+        File file = File.createTempFile("robot", ".journal");
+        file.deleteOnExit();
+        try (DrawingJournal journal = DrawingJournal.open(file)) {
+            for (DrawingJournal j : new DrawingJournal[]{null, journal}) {
+                long before = usedMemory();
+                DrawableStore store = j == null ? new DrawableStore() : new DrawableStore(j);
+                for (int i = 0; i < NUM_SEGMENTS; i++) {
+                    final float x = i % 800;
+                    final float y = 100 + (i % 2) * 50;
+                    store.add(new Line(x, y, new float[]{x + 1, 150 - (i % 2) * 50}, 2, Color.BLUE), 0L);
+                }
+                long retained = usedMemory() - before;
+
+                BufferedImage image = new BufferedImage(900, 600, BufferedImage.TYPE_INT_ARGB);
+                Graphics2D g2 = image.createGraphics();
+                g2.setRenderingHint(RenderingHints.KEY_ANTIALIASING, RenderingHints.VALUE_ANTIALIAS_ON);
+                drawAll(store, g2); // warm up
+                long start = System.nanoTime();
+                drawAll(store, g2);
+                long drawNanos = System.nanoTime() - start;
+                g2.dispose();
+
+                System.out.printf("%-10s heap: %6.1f MB (%5.2f B/segment), drawing all: %5.0f ms%n",
+                        j == null ? "on heap" : "journal", retained / 1e6, (double) retained / NUM_SEGMENTS,
+                        drawNanos / 1e6);
+                if (store.size() != NUM_SEGMENTS) throw new IllegalStateException();
+            }
+            System.out.printf("journal file: %.1f MB%n", file.length() / 1e6);
+        }
+    }
+
+    private static void drawAll(DrawableStore store, Graphics2D g2) {
+        final int size = store.size();
+        for (int i = 0; i < size; i++) {
+            store.draw(i, g2);
+        }
+    }
+
+    private static long usedMemory() {
+        Runtime runtime = Runtime.getRuntime();
+        for (int i = 0; i < 3; i++) {
+            System.gc();
+        }
+        return runtime.totalMemory() - runtime.freeMemory();
+    }
+}
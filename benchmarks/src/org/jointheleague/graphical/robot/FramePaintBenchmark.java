@@ -0,0 +1,77 @@
+package org.jointheleague.graphical.robot;
+
+import org.openjdk.jmh.annotations.*;
+
+import java.awt.*;
+import java.awt.image.BufferedImage;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Measures painting a full frame of the window into an offscreen image, with
+ * a number of Robots that have each committed a number of lines. When
+ * <code>rebuildInk</code> is set, the window's ink layer is rebuilt from all
+ * the drawables on every frame, as happens after a Robot clears its drawables;
+ * otherwise the frame only blits the ink layer and draws the Robots.
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(value = 1, jvmArgsAppend = "-Djava.awt.headless=true")
+@State(Scope.Benchmark)
+public class FramePaintBenchmark {
+
+    @Param({"1", "10", "100"})
+    public int robots;
+
+    @Param({"100", "1000"})
+    public int drawables;
+
+    @Param({"false", "true"})
+    public boolean rebuildInk;
+
+    private final List<Robot> robotList = new ArrayList<>();
+    private RobotWindow window;
+    private BufferedImage frame;
+    private Graphics2D g2;
+
+    @Setup
+    public void setUp() {
+        Robot.enableTurboMode(0);
+        BufferedImage image = RobotImage.loadDefaultRobi();
+        Random random = new Random(42L);
+        for (int i = 0; i < robots; i++) {
+            Robot robot = new Robot(image, random.nextInt(900), random.nextInt(600));
+            robot.setSpeed(100);
+            robot.setPenWidth(1 + random.nextInt(5));
+            robot.penDown();
+            for (int j = 0; j < drawables; j++) {
+                robot.setPenColor(new Color(random.nextInt(0x1000000)));
+                robot.lineTo(random.nextInt(900), random.nextInt(600), false);
+            }
+            robotList.add(robot);
+        }
+        Robot.disableTurboMode();
+        window = RobotWindow.getInstance();
+        frame = new BufferedImage(window.getWidth(), window.getHeight(), BufferedImage.TYPE_INT_RGB);
+        g2 = frame.createGraphics();
+    }
+
+    @TearDown
+    public void tearDown() {
+        g2.dispose();
+        for (Robot robot : robotList) {
+            window.removeRobot(robot);
+        }
+    }
+
+    @Benchmark
+    public BufferedImage paintFrame() {
+        if (rebuildInk) window.invalidateInk();
+        window.paintScene(g2);
+        return frame;
+    }
+}
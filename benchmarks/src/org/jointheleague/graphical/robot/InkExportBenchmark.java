@@ -0,0 +1,67 @@
+package org.jointheleague.graphical.robot;
+
+import org.jointheleague.graphical.robot.curves.Line;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.Random;
+
+/**
+ * Exports a drawing of a million short lines, a random walk of a Robot
+ * whose pen changes color now and then, to SVG and to PNG at four times
+ * the window's resolution, and reports the time taken, the size of the
+ * files and the heap in use afterwards. The lines are committed directly
+ * to the Robot's store, so that the drawing does not take long to make.
+ * <p>
+ * Run with <code>java -Xmx64m -Djava.awt.headless=true
+ * org.jointheleague.graphical.robot.InkExportBenchmark</code> to check
+ * that the export does not need much memory.
+ * </p>
+ */
+public class InkExportBenchmark {
+
+    private static final int NUM_LINES = 1000000;
+    private static final int STEP = 8;
+
+    public static void main(String[] args) throws IOException {
+        Robot robot = new Robot(450, 300);
+        robot.hide();
+        DrawableStore store = robot.getCommittedDrawables();
+        Random random = new Random(42L);
+        float x = 450F;
+        float y = 300F;
+        for (int i = 0; i < NUM_LINES; i++) {
+            if (i % 10000 == 0) robot.setRandomPenColor();
+            final float toX = Math.min(Math.max(0F, x + random.nextInt(2 * STEP + 1) - STEP), 900F);
+            final float toY = Math.min(Math.max(0F, y + random.nextInt(2 * STEP + 1) - STEP), 600F);
+            store.add(new Line(x, y, new float[]{toX, toY}, 2, robot.getPenColor()), 0L);
+            x = toX;
+            y = toY;
+        }
+
+        RobotWindow window = RobotWindow.getInstance();
+        File svg = File.createTempFile("ink", ".svg");
+        File png = File.createTempFile("ink", ".png");
+        try {
+            long before = System.nanoTime();
+            window.writeSvg(svg);
+            long svgNanos = System.nanoTime() - before;
+            before = System.nanoTime();
+            window.writeInkPng(png, 4.0);
+            long pngNanos = System.nanoTime() - before;
+            System.gc();
+            Runtime runtime = Runtime.getRuntime();
+
+            System.out.printf("Lines:                    %d%n", store.size());
+            System.out.printf("SVG (ms):                 %.0f%n", svgNanos / 1e6);
+            System.out.printf("SVG (KB):                 %d%n", svg.length() / 1024);
+            System.out.printf("PNG at 4x (ms):           %.0f%n", pngNanos / 1e6);
+            System.out.printf("PNG at 4x (KB):           %d%n", png.length() / 1024);
+            System.out.printf("Heap in use (MB):         %d%n", (runtime.totalMemory() - runtime.freeMemory()) >> 20);
+        } finally {
+            svg.delete();
+            png.delete();
+        }
+        System.exit(0);
+    }
+}
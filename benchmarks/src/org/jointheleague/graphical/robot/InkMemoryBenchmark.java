@@ -0,0 +1,94 @@
+package org.jointheleague.graphical.robot;
+
+import org.jointheleague.graphical.robot.curves.Cubic;
+import org.jointheleague.graphical.robot.curves.Drawable;
+import org.jointheleague.graphical.robot.curves.Line;
+import org.jointheleague.graphical.robot.curves.Quad;
+
+import java.awt.*;
+
+/**
+ * Measures the heap retained per committed segment by the {@link DrawableStore},
+ * compared with keeping each segment as an object together with its stamp, as
+ * the store used to. The segments are either connected, as when a Robot draws
+ * without lifting its pen, or separate. The program exits with status 1 if the
+ * store does not use at least 4 times less memory for connected lines.
+ * <p>
+ * Run with <code>java -Djava.awt.headless=true
+ * org.jointheleague.graphical.robot.InkMemoryBenchmark</code>.
+ * </p>
+ */
+public class InkMemoryBenchmark {
+
+    private static final int NUM_SEGMENTS = 200_000;
+    private static final Color[] COLORS = {Color.BLACK, Color.RED, Color.BLUE};
+
+    public static void main(String[] args) {
+        boolean enough = true;
+        for (String kind : new String[]{"line", "quad", "cubic"}) {
+            for (boolean connected : new boolean[]{true, false}) {
+                long objectBytes = retainedBytes(() -> {
+                    Drawable[] objects = new Drawable[NUM_SEGMENTS];
+                    long[] stamps = new long[NUM_SEGMENTS];
+                    for (int i = 0; i < NUM_SEGMENTS; i++) {
+                        objects[i] = segment(kind, i, connected);
+                    }
+                    return new Object[]{objects, stamps};
+                });
+                long storeBytes = retainedBytes(() -> {
+                    DrawableStore store = new DrawableStore();
+                    for (int i = 0; i < NUM_SEGMENTS; i++) {
+                        store.add(segment(kind, i, connected), 0L);
+                    }
+                    return store;
+                });
+                double ratio = (double) objectBytes / storeBytes;
+                System.out.printf("%-5s %-9s objects: %5.1f B/segment, store: %5.1f B/segment, %.1fx%n",
+                        kind, connected ? "connected" : "separate", (double) objectBytes / NUM_SEGMENTS,
+                        (double) storeBytes / NUM_SEGMENTS, ratio);
+                if ("line".equals(kind) && connected) enough = ratio >= 4.0;
+            }
+        }
+        System.exit(enough ? 0 : 1);
+    }
+
+    /**
+     * @return the i-th segment of a zigzag, in one of a few pen colors
+     */
+    private static Drawable segment(String kind, int i, boolean connected) {
+        final float x = i % 800;
+        final float y = 100 + (i % 2) * 50;
+        final float endX = x + 1;
+        final float endY = 150 - (i % 2) * 50;
+        final float startY = connected ? y : y + 1;
+        final Color color = COLORS[i / 1000 % COLORS.length];
+        switch (kind) {
+            case "line":
+                return new Line(x, startY, new float[]{endX, endY}, 2, color);
+            case "quad":
+                return new Quad(x, startY, new float[]{x, endY, endX, endY}, 2, color);
+            default:
+                return new Cubic(x, startY, new float[]{x, y, x, endY, endX, endY}, 2, color);
+        }
+    }
+
+    private interface Builder {
+        Object build();
+    }
+
+    private static long retainedBytes(Builder builder) {
+        long before = usedMemory();
+        Object result = builder.build();
+        long after = usedMemory();
+        if (result.hashCode() == 42) System.out.print("");
+        return after - before;
+    }
+
+    private static long usedMemory() {
+        Runtime runtime = Runtime.getRuntime();
+        for (int i = 0; i < 3; i++) {
+            System.gc();
+        }
+        return runtime.totalMemory() - runtime.freeMemory();
+    }
+}
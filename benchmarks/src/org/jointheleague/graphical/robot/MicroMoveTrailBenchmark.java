@@ -0,0 +1,72 @@
+package org.jointheleague.graphical.robot;
+
+import java.awt.*;
+import java.awt.image.BufferedImage;
+import java.util.Random;
+
+/**
+ * Simulates a minute of drawing with the keyboard, where a Robot alternates
+ * between runs of {@link Robot#microMove(int)} and runs of
+ * {@link Robot#microTurn(int)}, one per tick, and reports the number of
+ * drawables that the Robot has committed and the time taken to rebuild the
+ * window's ink layer from them. The Robot runs in turbo mode, so that the
+ * simulation does not wait for the window's timer.
+ * <p>
+ * Run with <code>java -Djava.awt.headless=true
+ * org.jointheleague.graphical.robot.MicroMoveTrailBenchmark</code>.
+ * </p>
+ */
+public class MicroMoveTrailBenchmark {
+
+    private static final int NUM_TICKS = 60 * 1000 / Robot.TICK_LENGTH;
+    private static final int NUM_FRAMES = 20;
+
+    public static void main(String[] args) throws InterruptedException {
+        Robot.enableTurboMode(0);
+        Robot robot = new Robot(450, 300);
+        robot.setSpeed(2);
+        robot.penDown();
+        Random random = new Random(42L);
+        int ticks = 0;
+        int turns = 0;
+        while (ticks < NUM_TICKS) {
+            final int sgn = random.nextInt(4) == 0 ? -1 : 1;
+            for (int i = 10 + random.nextInt(40); i > 0 && ticks < NUM_TICKS; i--, ticks++) {
+                // keep the Robot inside the window by heading back to the center
+                final float x = robot.getX();
+                final float y = robot.getY();
+                if (x < 50 || x > 850 || y < 50 || y > 550) {
+                    robot.setAngle(Math.toDegrees(Math.atan2(450 - x, y - 300)) + (sgn < 0 ? 180 : 0));
+                }
+                robot.microMove(sgn);
+            }
+            for (int i = 1 + random.nextInt(10); i > 0 && ticks < NUM_TICKS; i--, ticks++) {
+                robot.microTurn(1);
+            }
+            turns++;
+            if (random.nextInt(10) == 0) robot.setRandomPenColor();
+        }
+        Robot.disableTurboMode();
+
+        RobotWindow window = RobotWindow.getInstance();
+        BufferedImage frame = new BufferedImage(window.getWidth(), window.getHeight(), BufferedImage.TYPE_INT_RGB);
+        Graphics2D g2 = frame.createGraphics();
+        for (int i = 0; i < NUM_FRAMES; i++) {
+            window.invalidateInk();
+            window.paintScene(g2);
+        }
+        long before = System.nanoTime();
+        for (int i = 0; i < NUM_FRAMES; i++) {
+            window.invalidateInk();
+            window.paintScene(g2);
+        }
+        long rebuildNanos = (System.nanoTime() - before) / NUM_FRAMES;
+        g2.dispose();
+
+        System.out.printf("Ticks:                    %d%n", ticks);
+        System.out.printf("Runs of moves and turns:  %d%n", turns);
+        System.out.printf("Committed drawables:      %d%n", robot.getCommittedDrawables().size());
+        System.out.printf("Ink layer rebuild (ms):   %.2f%n", rebuildNanos / 1e6);
+        System.exit(0);
+    }
+}
@@ -0,0 +1,101 @@
+package org.jointheleague.graphical.robot;
+
+import java.awt.*;
+import java.awt.geom.Ellipse2D;
+import java.awt.image.BufferedImage;
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Paths;
+import java.util.Random;
+
+/**
+ * Replays a recording made with {@link RobotRecorder} as fast as possible,
+ * and reports the time taken to replay it and to rebuild the window's ink
+ * layer from the drawables committed. The recording is read from the file
+ * given as argument, e.g., one made while running a student's program;
+ * without argument, a program that draws lines, curves and filled paths
+ * with random pens is recorded first, in turbo mode.
+ * <p>
+ * Run with <code>java -Djava.awt.headless=true
+ * org.jointheleague.graphical.robot.ReplayBenchmark [recording]</code>.
+ * </p>
+ */
+public class ReplayBenchmark {
+
+    private static final int NUM_REPLAYS = 10;
+    private static final int NUM_FRAMES = 20;
+
+    public static void main(String[] args) throws IOException {
+        final byte[] recording = args.length > 0 ? Files.readAllBytes(Paths.get(args[0])) : record();
+
+        Robot robot = new Robot(450, 300);
+        robot.hide();
+        long replayNanos = 0L;
+        for (int i = 0; i < 2 * NUM_REPLAYS; i++) {
+            robot.clearDrawables();
+            long before = System.nanoTime();
+            new RobotReplayer(new ByteArrayInputStream(recording)).replay(robot, RobotReplayer.INSTANT);
+            if (i >= NUM_REPLAYS) replayNanos += System.nanoTime() - before; // the first half warms up
+        }
+
+        RobotWindow window = RobotWindow.getInstance();
+        BufferedImage frame = new BufferedImage(window.getWidth(), window.getHeight(), BufferedImage.TYPE_INT_RGB);
+        Graphics2D g2 = frame.createGraphics();
+        for (int i = 0; i < NUM_FRAMES; i++) {
+            window.invalidateInk();
+            window.paintScene(g2);
+        }
+        long before = System.nanoTime();
+        for (int i = 0; i < NUM_FRAMES; i++) {
+            window.invalidateInk();
+            window.paintScene(g2);
+        }
+        long rebuildNanos = (System.nanoTime() - before) / NUM_FRAMES;
+        g2.dispose();
+
+        System.out.printf("Recording size (bytes):   %d%n", recording.length);
+        System.out.printf("Committed drawables:      %d%n", robot.getCommittedDrawables().size());
+        System.out.printf("Replay (ms):              %.2f%n", replayNanos / 1e6 / NUM_REPLAYS);
+        System.out.printf("Ink layer rebuild (ms):   %.2f%n", rebuildNanos / 1e6);
+        System.exit(0);
+    }
+
+    private static byte[] record() throws IOException {
+        Robot.enableTurboMode(0);
+        Robot robot = new Robot(450, 300);
+        robot.hide();
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        try (RobotRecorder recorder = new RobotRecorder(robot, out)) {
+            Random random = new Random(42L);
+            recorder.setSpeed(10);
+            recorder.penDown();
+            for (int i = 0; i < 2000; i++) {
+                if (random.nextInt(10) == 0) recorder.setRandomPenColor();
+                if (random.nextInt(20) == 0) recorder.setPenWidth(1 + random.nextInt(5));
+                final float x = 50 + random.nextInt(800);
+                final float y = 50 + random.nextInt(500);
+                switch (random.nextInt(8)) {
+                    case 0:
+                        recorder.quadTo(x, y, 50 + random.nextInt(800), 50 + random.nextInt(500), false);
+                        break;
+                    case 1:
+                        recorder.cubicTo(x, y, 50 + random.nextInt(800), 50 + random.nextInt(500),
+                                50 + random.nextInt(800), 50 + random.nextInt(500), false);
+                        break;
+                    case 2:
+                        recorder.followPath(new Ellipse2D.Float(x - 20, y - 20, 40, 40).getPathIterator(null),
+                                random.nextBoolean());
+                        break;
+                    default:
+                        recorder.lineTo(x, y, false);
+                }
+            }
+        } finally {
+            Robot.disableTurboMode();
+        }
+        robot.clearDrawables();
+        return out.toByteArray();
+    }
+}
@@ -0,0 +1,34 @@
+package org.jointheleague.graphical.robot;
+
+import org.openjdk.jmh.annotations.*;
+
+import java.awt.image.BufferedImage;
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Measures loading the default Robot image: decoding it from its .robi
+ * resource, which is done the first time it is needed, and getting a copy
+ * of the cached image, which is what {@link RobotImage#loadRobi(String)}
+ * costs afterwards.
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(value = 1, jvmArgsAppend = "-Djava.awt.headless=true")
+public class RobiLoadBenchmark {
+
+    @Benchmark
+    public BufferedImage decodeRobi() throws IOException {
+        try (InputStream is = RobotImage.class.getResourceAsStream("res/rob.robi")) {
+            return RobotImage.readRobi(is, "rob");
+        }
+    }
+
+    @Benchmark
+    public BufferedImage loadRobi() {
+        return RobotImage.loadRobi("rob");
+    }
+}
@@ -0,0 +1,60 @@
+package org.jointheleague.graphical.robot;
+
+import java.awt.image.BufferedImage;
+
+/**
+ * Constructs 1,000 default Robots, as a program that spawns a swarm does,
+ * and then 1,000 Robots that each have an image of their own, and reports
+ * the time taken and the heap in use after each. Each default Robot loads
+ * the default robi image, and each Robot adds itself to the window. The
+ * window is painted once after each swarm is created.
+ * <p>
+ * Run with <code>java -Djava.awt.headless=true
+ * org.jointheleague.graphical.robot.RobotSpawnBenchmark</code>.
+ * </p>
+ */
+public class RobotSpawnBenchmark {
+
+    private static final int NUM_ROBOTS = 1000;
+
+    public static void main(String[] args) {
+        Robot[] robots = new Robot[NUM_ROBOTS];
+        long before = System.nanoTime();
+        robots[0] = new Robot();
+        long firstNanos = System.nanoTime() - before;
+        for (int i = 1; i < NUM_ROBOTS; i++) {
+            robots[i] = new Robot();
+        }
+        long totalNanos = System.nanoTime() - before;
+        RobotWindow.getInstance().snapshot();
+        long paintedNanos = System.nanoTime() - before;
+        System.gc();
+        Runtime runtime = Runtime.getRuntime();
+        long heap = runtime.totalMemory() - runtime.freeMemory();
+
+        System.out.printf("Robots:                   %d%n", robots.length);
+        System.out.printf("First Robot (ms):         %.2f%n", firstNanos / 1e6);
+        System.out.printf("All Robots (ms):          %.0f%n", totalNanos / 1e6);
+        System.out.printf("Per Robot after the first (us): %.0f%n", (totalNanos - firstNanos) / 1e3 / (NUM_ROBOTS - 1));
+        System.out.printf("All Robots painted (ms):  %.0f%n", paintedNanos / 1e6);
+        System.out.printf("Heap in use (MB):         %d%n", heap >> 20);
+
+        BufferedImage[] images = new BufferedImage[NUM_ROBOTS];
+        for (int i = 0; i < NUM_ROBOTS; i++) {
+            images[i] = RobotImage.loadDefaultRobi(); // a copy, so that no two Robots share their image
+        }
+        before = System.nanoTime();
+        for (int i = 0; i < NUM_ROBOTS; i++) {
+            robots[i] = new Robot(images[i]);
+        }
+        totalNanos = System.nanoTime() - before;
+        RobotWindow.getInstance().snapshot();
+        paintedNanos = System.nanoTime() - before;
+        System.gc();
+
+        System.out.printf("Robots with own image (ms): %.0f%n", totalNanos / 1e6);
+        System.out.printf("All Robots painted (ms):  %.0f%n", paintedNanos / 1e6);
+        System.out.printf("Heap in use (MB):         %d%n", (runtime.totalMemory() - runtime.freeMemory() - heap) >> 20);
+        System.exit(0);
+    }
+}
@@ -0,0 +1,97 @@
+package org.jointheleague.graphical.robot;
+
+import java.lang.management.ManagementFactory;
+
+/**
+ * Measures the number of bytes allocated per tick by a Robot tracing
+ * quadratic and cubic curves, which is expected to be zero. The Robot runs in
+ * turbo mode so that it advances without waiting for the window's timer.
+ * <p>
+ * The allocations per tick are obtained by tracing the same curves at two
+ * different speeds: the allocations that are done once per curve are the same
+ * for both, while the number of ticks differs. The ticks are counted by a
+ * {@link LockstepClock} that the Robot is alone in. The program exits with
+ * status 1 if any allocation per tick is found.
+ * </p>
+ * <p>
+ * Run with <code>java -Djava.awt.headless=true
+ * org.jointheleague.graphical.robot.SegmentTracingAllocationBenchmark</code>.
+ * </p>
+ */
+public class SegmentTracingAllocationBenchmark {
+
+    private static final int NUM_CURVES = 200;
+    private static final int NUM_ROUNDS = 10;
+    private static final float SIZE = 200F;
+    private static final int FAST = 10;
+    private static final int SLOW = 1;
+
+    private static final com.sun.management.ThreadMXBean THREAD_BEAN =
+            (com.sun.management.ThreadMXBean) ManagementFactory.getThreadMXBean();
+
+    public static void main(String[] args) {
+        Robot.enableTurboMode(0);
+        Robot robot = new Robot(450, 300);
+        LockstepClock clock = new LockstepClock();
+        clock.add(robot);
+        robot.penDown();
+        // warm up, so that the measured loops run compiled code
+        robot.setSpeed(SLOW);
+        for (int i = 0; i < 20; i++) {
+            trace(robot, "quad");
+            trace(robot, "cubic");
+        }
+
+        boolean allocates = false;
+        for (String kind : new String[]{"quad", "cubic"}) {
+            long fast = 0L;
+            long slow = 0L;
+            long fastTicks = 0L;
+            long slowTicks = 0L;
+            for (int round = 0; round < NUM_ROUNDS; round++) {
+                robot.clearDrawables();
+                robot.setSpeed(FAST);
+                long tick = clock.getTick();
+                long before = allocatedBytes();
+                trace(robot, kind);
+                fast += allocatedBytes() - before;
+                fastTicks += clock.getTick() - tick;
+
+                robot.clearDrawables();
+                robot.setSpeed(SLOW);
+                tick = clock.getTick();
+                before = allocatedBytes();
+                trace(robot, kind);
+                slow += allocatedBytes() - before;
+                slowTicks += clock.getTick() - tick;
+            }
+            double perTick = (double) (slow - fast) / (slowTicks - fastTicks);
+            allocates |= perTick >= 1.0;
+            System.out.printf("%-5s ticks per curve: %d to %d, bytes per curve: %d, bytes per tick: %.2f%n",
+                    kind, fastTicks / (NUM_ROUNDS * NUM_CURVES), slowTicks / (NUM_ROUNDS * NUM_CURVES),
+                    fast / (NUM_ROUNDS * NUM_CURVES), perTick);
+        }
+        clock.remove(robot);
+        Robot.disableTurboMode();
+        System.exit(allocates ? 1 : 0);
+    }
+
+    /**
+     * Traces back and forth along curves of the given kind.
+     */
+    private static void trace(Robot robot, String kind) {
+        for (int i = 0; i < NUM_CURVES; i += 2) {
+            if ("quad".equals(kind)) {
+                robot.quadTo(SIZE / 2, -SIZE, SIZE, 0F, true);
+                robot.quadTo(-SIZE / 2, SIZE, -SIZE, 0F, true);
+            } else {
+                robot.cubicTo(0F, -SIZE, SIZE, -SIZE, SIZE, 0F, true);
+                robot.cubicTo(0F, SIZE, -SIZE, SIZE, -SIZE, 0F, true);
+            }
+        }
+    }
+
+    private static long allocatedBytes() {
+        return THREAD_BEAN.getThreadAllocatedBytes(Thread.currentThread().getId());
+    }
+}
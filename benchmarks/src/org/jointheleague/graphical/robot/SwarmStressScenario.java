@@ -0,0 +1,170 @@
+package org.jointheleague.graphical.robot;
+
+import javax.swing.*;
+import java.awt.*;
+import java.awt.image.BufferedImage;
+import java.lang.management.ManagementFactory;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.Future;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Animates a swarm of Robots concurrently, each controlled by its own program
+ * launched with {@link RobotLauncher}, and checks that the swarm runs at the
+ * pace of the window: the frames must be produced at a stable rate, and the
+ * Robots must use the ticks released by the window.
+ * <p>
+ * Every Robot moves on every tick, so the whole window is damaged on every
+ * frame. The scenario therefore paints the whole scene on every frame, on the
+ * EDT, as the window does when it is shown, also when it runs headless. The
+ * scenario fails, with exit status 1, if the 99th percentile of the interval
+ * between two frames exceeds {@value #MAX_FRAME_INTERVAL} ms, or if the Robots
+ * use less than {@value #MIN_TICKS_USED}% of the ticks released.
+ * </p>
+ * <p>
+ * Run with <code>java -Djava.awt.headless=true
+ * org.jointheleague.graphical.robot.SwarmStressScenario [robots] [seconds]</code>.
+ * The defaults are {@value #DEFAULT_NUM_ROBOTS} Robots for 10 seconds. Use Java
+ * 21 or later to run the Robots on virtual threads.
+ * </p>
+ * <p>
+ * With 10,000 Robots, the sprites cover the window many times over, so the
+ * window composites them front to back into one layer, split into a band per
+ * CPU, and waking every Robot on every frame would take most of a CPU, so the
+ * window releases the ticks in turns to a quarter of the Robots on each frame
+ * (see {@link FrameScheduler}). Measured on a single CPU (Intel Xeon, Java 21),
+ * painting a full frame takes about 7 ms at the median and 14 ms at the 99th
+ * percentile, the frames are 20 ms apart at the median and about 26 ms at the
+ * 99th percentile, and the Robots use 99% of the ticks, so a single CPU is
+ * enough to pass with the defaults. A single CPU passes with up to about
+ * 10,000 Robots; with 20,000 Robots, the 99th percentile rises to about 40 ms.
+ * Each additional CPU runs the Robots' threads and a band of the layer next to
+ * the EDT.
+ * </p>
+ */
+public class SwarmStressScenario {
+
+    private static final int DEFAULT_NUM_ROBOTS = 10_000;
+    private static final int DEFAULT_SECONDS = 10;
+    private static final int WARM_UP = 2000; // in milliseconds
+    private static final int MAX_FRAME_INTERVAL = 30; // in milliseconds, at the 99th percentile
+    private static final int MIN_TICKS_USED = 90; // in percent
+
+    private static volatile boolean running = true;
+
+    public static void main(String[] args) throws Exception {
+        final int numRobots = args.length > 0 ? Integer.parseInt(args[0]) : DEFAULT_NUM_ROBOTS;
+        final int seconds = args.length > 1 ? Integer.parseInt(args[1]) : DEFAULT_SECONDS;
+        System.out.printf("Virtual threads: %b%n", RobotLauncher.usesVirtualThreads());
+
+        // all the Robots share one image, and therefore their sprites
+        BufferedImage image = RobotImage.loadDefaultRobi();
+        Random random = new Random(42L);
+        List<Robot> robots = new ArrayList<>(numRobots);
+        long start = System.nanoTime();
+        for (int i = 0; i < numRobots; i++) {
+            Robot robot = new Robot(image, random.nextInt(900), random.nextInt(600));
+            robot.miniaturize();
+            robot.setSpeed(2);
+            robot.setAngle(random.nextInt(360));
+            robots.add(robot);
+        }
+        System.out.printf("Created %d robots in %d ms%n", numRobots, (System.nanoTime() - start) / 1_000_000);
+
+        final LongAdder steps = new LongAdder();
+        List<Future<?>> programs = new ArrayList<>(numRobots);
+        for (Robot robot : robots) {
+            programs.add(RobotLauncher.launch(robot, r -> {
+                try {
+                    while (running) {
+                        for (int i = 0; i < 10 && running; i++) {
+                            r.microMove(1);
+                            steps.increment();
+                        }
+                        r.microTurn(1);
+                        steps.increment();
+                    }
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                }
+            }));
+        }
+
+        // paints a full frame on every frame of the window, as a window that is wholly damaged
+        final RobotWindow window = RobotWindow.getInstance();
+        final BufferedImage frame = GraphicsEnvironment.isHeadless()
+                ? new BufferedImage(window.getWidth(), window.getHeight(), BufferedImage.TYPE_INT_RGB)
+                : window.getGraphicsConfiguration().createCompatibleImage(window.getWidth(), window.getHeight());
+        final int maxFrames = seconds * 1000 / Robot.TICK_LENGTH + 1;
+        final long[] frameIntervals = new long[maxFrames];
+        final long[] paintTimes = new long[maxFrames];
+        final int[] numFrames = {0};
+        final long[] lastFrame = {0L};
+        final boolean[] measuring = {false};
+        SwingUtilities.invokeAndWait(() -> window.getScheduler().addFrameListener(e -> {
+            long before = System.nanoTime();
+            Graphics2D g2 = frame.createGraphics();
+            window.paintScene(g2);
+            g2.dispose();
+            long now = System.nanoTime();
+            if (measuring[0] && numFrames[0] < maxFrames) {
+                frameIntervals[numFrames[0]] = before - lastFrame[0];
+                paintTimes[numFrames[0]++] = now - before;
+            }
+            lastFrame[0] = before;
+        }));
+        Thread.sleep(WARM_UP);
+
+        SwingUtilities.invokeAndWait(() -> measuring[0] = true);
+        final long stepsBefore = steps.sum();
+        final long measureStart = System.nanoTime();
+        final long measureEnd = measureStart + seconds * 1_000_000_000L;
+        int maxThreads = 0;
+        while (System.nanoTime() < measureEnd) {
+            maxThreads = Math.max(maxThreads, ManagementFactory.getThreadMXBean().getThreadCount());
+            Thread.sleep(250);
+        }
+        final long elapsed = System.nanoTime() - measureStart;
+        final long usedSteps = steps.sum() - stepsBefore;
+        SwingUtilities.invokeAndWait(() -> measuring[0] = false);
+
+        running = false;
+        for (Future<?> program : programs) {
+            program.get();
+        }
+
+        long[] intervals = Arrays.copyOf(frameIntervals, numFrames[0]);
+        long[] paints = Arrays.copyOf(paintTimes, numFrames[0]);
+        Arrays.sort(intervals);
+        Arrays.sort(paints);
+        long availableSteps = (long) numRobots * elapsed / (Robot.TICK_LENGTH * 1_000_000L);
+        double p99 = millis(percentile(intervals, 0.99));
+        double ticksUsed = 100.0 * usedSteps / availableSteps;
+
+        System.out.printf("Robots:                    %d%n", numRobots);
+        System.out.printf("Live threads (max):        %d%n", maxThreads);
+        System.out.printf("Frame interval p50/p99/max: %.1f / %.1f / %.1f ms (target %d ms, p99 at most %d ms)%n",
+                millis(percentile(intervals, 0.5)), p99, millis(percentile(intervals, 1.0)),
+                Robot.TICK_LENGTH, MAX_FRAME_INTERVAL);
+        System.out.printf("Full repaint p50/p99/max:   %.1f / %.1f / %.1f ms%n",
+                millis(percentile(paints, 0.5)), millis(percentile(paints, 0.99)),
+                millis(percentile(paints, 1.0)));
+        System.out.printf("Ticks used by the robots:   %d of %d (%.0f%%, at least %d%%)%n",
+                usedSteps, availableSteps, ticksUsed, MIN_TICKS_USED);
+        final boolean passed = p99 <= MAX_FRAME_INTERVAL && ticksUsed >= MIN_TICKS_USED;
+        System.out.println(passed ? "PASSED" : "FAILED");
+        System.exit(passed ? 0 : 1);
+    }
+
+    private static long percentile(long[] sorted, double p) {
+        if (sorted.length == 0) return 0L;
+        return sorted[(int) Math.min(sorted.length - 1, Math.round(p * (sorted.length - 1)))];
+    }
+
+    private static double millis(long nanos) {
+        return nanos / 1e6;
+    }
+}
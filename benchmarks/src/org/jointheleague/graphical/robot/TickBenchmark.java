@@ -0,0 +1,84 @@
+package org.jointheleague.graphical.robot;
+
+import org.openjdk.jmh.annotations.*;
+import org.openjdk.jmh.infra.Blackhole;
+
+import java.awt.image.BufferedImage;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Measures the throughput of ticks. <code>releaseTicks</code> is the work done
+ * by the window's timer on every frame to release one tick to each Robot and
+ * collect the areas to repaint; <code>turboTicks</code> is the time a Robot in
+ * turbo mode takes to advance one tick.
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(value = 1, jvmArgsAppend = "-Djava.awt.headless=true")
+public class TickBenchmark {
+
+    private static final int TICKS_PER_INVOCATION = 200;
+
+    @State(Scope.Benchmark)
+    public static class Swarm {
+
+        @Param({"100", "1000", "10000"})
+        public int robots;
+
+        private final List<Robot> robotList = new ArrayList<>();
+
+        @Setup
+        public void setUp() {
+            BufferedImage image = RobotImage.loadDefaultRobi();
+            Random random = new Random(42L);
+            for (int i = 0; i < robots; i++) {
+                robotList.add(new Robot(image, random.nextInt(900), random.nextInt(600)));
+            }
+        }
+
+        @TearDown
+        public void tearDown() {
+            RobotWindow window = RobotWindow.getInstance();
+            for (Robot robot : robotList) {
+                window.removeRobot(robot);
+            }
+        }
+    }
+
+    @State(Scope.Thread)
+    public static class TurboRobot {
+
+        private Robot robot;
+
+        @Setup
+        public void setUp() {
+            Robot.enableTurboMode(0);
+            robot = new Robot(450, 300);
+        }
+
+        @TearDown
+        public void tearDown() {
+            Robot.disableTurboMode();
+            RobotWindow.getInstance().removeRobot(robot);
+        }
+    }
+
+    @Benchmark
+    public void releaseTicks(Swarm swarm, Blackhole blackhole) {
+        for (Robot robot : swarm.robotList) {
+            blackhole.consume(robot.tick(1));
+        }
+    }
+
+    @Benchmark
+    @OperationsPerInvocation(TICKS_PER_INVOCATION)
+    public void turboTicks(TurboRobot turbo) {
+        turbo.robot.move(TICKS_PER_INVOCATION / 2);
+        turbo.robot.move(-TICKS_PER_INVOCATION / 2);
+    }
+}
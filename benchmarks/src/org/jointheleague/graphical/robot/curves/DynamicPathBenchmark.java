@@ -0,0 +1,89 @@
+package org.jointheleague.graphical.robot.curves;
+
+import org.jointheleague.graphical.robot.Robot;
+import org.openjdk.jmh.annotations.*;
+
+import java.awt.*;
+import java.awt.geom.Path2D;
+import java.awt.image.BufferedImage;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Measures a Robot following a path: advancing along the path with
+ * {@link DynamicPath#incrementTime(double)}, and drawing the part of the path
+ * traced so far, which happens on every frame while the Robot is moving.
+ * The path is a regular polygon with a given number of sides, and the Robot
+ * takes three steps per side. The Robot runs in turbo mode, so that it does
+ * not wait for the window's timer.
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(value = 1, jvmArgsAppend = "-Djava.awt.headless=true")
+@State(Scope.Thread)
+public class DynamicPathBenchmark {
+
+    private static final float RADIUS = 250F;
+
+    @Param({"10", "1000"})
+    public int sides;
+
+    @Param({"false", "true"})
+    public boolean fill;
+
+    private Shape polygon;
+    private double speed;
+    private Robot robot;
+    private DynamicPath halfway;
+    private Graphics2D g2;
+
+    @Setup
+    public void setUp() {
+        Path2D path = new Path2D.Float();
+        path.moveTo(450F, 300F - RADIUS);
+        for (int i = 1; i < sides; i++) {
+            double a = 2 * Math.PI * i / sides;
+            path.lineTo(450 + RADIUS * Math.sin(a), 300 - RADIUS * Math.cos(a));
+        }
+        path.closePath();
+        polygon = path;
+        speed = 2 * RADIUS * Math.sin(Math.PI / sides) / 2.5;
+
+        Robot.enableTurboMode(0);
+        robot = new Robot(450, 300);
+        robot.hide();
+        halfway = newPath();
+        // one step for the move to the start, three steps per side, and one more step
+        for (int i = 0; i < 3 * (sides / 2) + 2; i++) {
+            halfway.incrementTime(speed);
+        }
+        g2 = new BufferedImage(900, 600, BufferedImage.TYPE_INT_ARGB).createGraphics();
+        g2.setRenderingHint(RenderingHints.KEY_ANTIALIASING, RenderingHints.VALUE_ANTIALIAS_ON);
+    }
+
+    @TearDown
+    public void tearDown() {
+        g2.dispose();
+        Robot.disableTurboMode();
+    }
+
+    private DynamicPath newPath() {
+        robot.setPos(450F, 300F - RADIUS);
+        return new DynamicPath(polygon.getPathIterator(null), 2, Color.BLUE, robot, fill);
+    }
+
+    @Benchmark
+    public DynamicPath followWholePath() {
+        DynamicPath path = newPath();
+        while (!path.isComplete()) {
+            path.incrementTime(speed);
+        }
+        return path;
+    }
+
+    @Benchmark
+    public void drawPartialPath() {
+        halfway.draw(g2);
+    }
+}
@@ -0,0 +1,83 @@
+package org.jointheleague.graphical.robot.curves;
+
+import org.openjdk.jmh.annotations.*;
+
+import java.awt.*;
+import java.awt.image.BufferedImage;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Measures the evaluation of the segments that Robots trace: the position,
+ * the angle, the curvature, the sub-segment, and the size at a given time,
+ * as well as drawing the segment, which the ink layer does once per segment.
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(value = 1, jvmArgsAppend = "-Djava.awt.headless=true")
+@State(Scope.Thread)
+public class SegmentBenchmark {
+
+    @Param({"line", "quad", "cubic"})
+    public String kind;
+
+    private Segment segment;
+    private float t = 0.37F;
+    private Graphics2D g2;
+
+    @Setup
+    public void setUp() {
+        final float[] ctrlPoints = {150F, 20F, 300F, 280F, 420F, 110F};
+        switch (kind) {
+            case "line":
+                segment = new Line(10F, 200F, ctrlPoints, 2, Color.BLUE);
+                break;
+            case "quad":
+                segment = new Quad(10F, 200F, ctrlPoints, 2, Color.BLUE);
+                break;
+            case "cubic":
+                segment = new Cubic(10F, 200F, ctrlPoints, 2, Color.BLUE);
+                break;
+            default:
+                throw new IllegalArgumentException("Unknown segment: " + kind);
+        }
+        g2 = new BufferedImage(450, 300, BufferedImage.TYPE_INT_ARGB).createGraphics();
+        g2.setRenderingHint(RenderingHints.KEY_ANTIALIASING, RenderingHints.VALUE_ANTIALIAS_ON);
+    }
+
+    @TearDown
+    public void tearDown() {
+        g2.dispose();
+    }
+
+    @Benchmark
+    public Object getPos() {
+        return segment.getPos(t);
+    }
+
+    @Benchmark
+    public double getAngle() {
+        return segment.getAngle(t);
+    }
+
+    @Benchmark
+    public double getCurvature() {
+        return segment.getCurvature(t);
+    }
+
+    @Benchmark
+    public Object subSegment() {
+        return segment.subSegment(t);
+    }
+
+    @Benchmark
+    public float getSize() {
+        return segment.getSize();
+    }
+
+    @Benchmark
+    public void draw() {
+        ((Drawable) segment).draw(g2);
+    }
+}
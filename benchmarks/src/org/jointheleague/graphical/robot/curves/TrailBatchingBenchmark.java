@@ -0,0 +1,114 @@
+package org.jointheleague.graphical.robot.curves;
+
+import org.openjdk.jmh.annotations.*;
+
+import java.awt.*;
+import java.awt.geom.Path2D;
+import java.awt.image.BufferedImage;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Compares the two ways of stroking a long trail of short segments of the same
+ * color and width: drawing each segment on its own, as the ink layer does, and
+ * merging runs of consecutive segments into a single {@link Path2D}, which is
+ * stroked with real joins. A batch of 1 draws each segment with
+ * {@link Drawable#draw(Graphics2D)}; a larger batch strokes a path of that many
+ * segments at a time. The trail is a random walk of steps of about 5 pixels
+ * across the window, drawn antialiased.
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(value = 1, jvmArgsAppend = "-Djava.awt.headless=true")
+@State(Scope.Thread)
+public class TrailBatchingBenchmark {
+
+    private static final int NUM_SEGMENTS = 10_000;
+    private static final float STEP = 5F;
+
+    @Param({"line", "quad"})
+    public String kind;
+
+    @Param({"2", "10"})
+    public int width;
+
+    @Param({"1", "8", "64", "10000"})
+    public int batch;
+
+    // the start of the trail, then the end point of each segment, preceded by its control point for quads
+    private float[] points;
+    private Drawable[] segments;
+    private Graphics2D g2;
+
+    @Setup
+    public void setUp() {
+        final boolean quad = kind.equals("quad");
+        final int stride = quad ? 4 : 2;
+        final Random random = new Random(42L);
+        points = new float[2 + stride * NUM_SEGMENTS];
+        segments = new Drawable[NUM_SEGMENTS];
+        float x = 450F;
+        float y = 300F;
+        double angle = 0.0;
+        points[0] = x;
+        points[1] = y;
+        for (int i = 0; i < NUM_SEGMENTS; i++) {
+            angle += random.nextGaussian() * 0.5;
+            final float dx = (float) (STEP * Math.cos(angle));
+            final float dy = (float) (STEP * Math.sin(angle));
+            final float[] ctrlPoints = new float[stride];
+            if (quad) {
+                // bulge to the side by a fifth of the step
+                ctrlPoints[0] = x + dx / 2 - dy / 5;
+                ctrlPoints[1] = y + dy / 2 + dx / 5;
+            }
+            final float endX = Math.max(0F, Math.min(900F, x + dx));
+            final float endY = Math.max(0F, Math.min(600F, y + dy));
+            ctrlPoints[stride - 2] = endX;
+            ctrlPoints[stride - 1] = endY;
+            System.arraycopy(ctrlPoints, 0, points, 2 + stride * i, stride);
+            segments[i] = quad ? new Quad(x, y, ctrlPoints, width, Color.BLUE)
+                    : new Line(x, y, ctrlPoints, width, Color.BLUE);
+            x = endX;
+            y = endY;
+        }
+        g2 = new BufferedImage(900, 600, BufferedImage.TYPE_INT_ARGB).createGraphics();
+        g2.setRenderingHint(RenderingHints.KEY_ANTIALIASING, RenderingHints.VALUE_ANTIALIAS_ON);
+    }
+
+    @TearDown
+    public void tearDown() {
+        g2.dispose();
+    }
+
+    @Benchmark
+    public void draw() {
+        if (batch == 1) {
+            for (Drawable segment : segments) {
+                segment.draw(g2);
+            }
+            return;
+        }
+        final boolean quad = kind.equals("quad");
+        final int stride = quad ? 4 : 2;
+        g2.setStroke(StrokeCache.get(width));
+        g2.setColor(Color.BLUE);
+        for (int i = 0; i < NUM_SEGMENTS; i += batch) {
+            final int end = Math.min(NUM_SEGMENTS, i + batch);
+            final Path2D.Float path = new Path2D.Float(Path2D.WIND_NON_ZERO, stride / 2 * (end - i) + 1);
+            // a segment starts where the previous one ends
+            path.moveTo(points[stride * i], points[stride * i + 1]);
+            for (int j = i; j < end; j++) {
+                final int pos = 2 + stride * j;
+                if (quad) {
+                    path.quadTo(points[pos], points[pos + 1], points[pos + 2], points[pos + 3]);
+                } else {
+                    path.lineTo(points[pos], points[pos + 1]);
+                }
+            }
+            g2.draw(path);
+        }
+    }
+}
@@ -0,0 +1,178 @@
+package org.jointheleague.graphical.robot;
+
+import javax.imageio.ImageIO;
+import java.awt.image.BufferedImage;
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.UncheckedIOException;
+import java.net.MalformedURLException;
+import java.net.URL;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * <p>
+ * Loads the images of the Robots and of the window in the background, so
+ * that neither the programs controlling the Robots nor the window have to
+ * wait while an image is read or downloaded. An image is located by
+ * </p>
+ * <ul>
+ * <li>a URL, e.g., <code>https://example.com/robot.png</code> or
+ * <code>file:/home/me/robot.png</code>,</li>
+ * <li>the name of a resource on the classpath, e.g.,
+ * <code>org/jointheleague/graphical/robot/res/league_logo.png</code>, or</li>
+ * <li>the path of a file, e.g., <code>images/robot.png</code>.</li>
+ * </ul>
+ * <p>
+ * Images in robi format are recognized by their ".robi" extension; any
+ * other image is read with {@link ImageIO}.
+ * </p>
+ * <p>
+ * The images loaded are cached by location, and the least recently used
+ * ones are evicted once the cached images take more memory than the
+ * capacity of the cache. An image that is requested again while it is
+ * still being loaded is loaded only once. The images are shared and must
+ * therefore not be modified.
+ * </p>
+ */
+public final class AssetManager {
+
+    private static final int NUM_THREADS = 2;
+    private static final long DEFAULT_CAPACITY = 32L << 20; // in bytes
+    private static final ExecutorService EXECUTOR = Executors.newFixedThreadPool(NUM_THREADS, new DaemonThreadFactory());
+
+    // the entries, in the order in which they were last used; guarded by itself
+    private static final Map<String, Entry> CACHE = new LinkedHashMap<>(16, 0.75f, true);
+    private static long capacity = DEFAULT_CAPACITY; // guarded by CACHE
+    private static long cachedBytes; // the memory taken by the images loaded; guarded by CACHE
+
+    private AssetManager() {
+    }
+
+    /**
+     * Loads an image in the background, unless it is cached.
+     *
+     * @param location the URL, classpath resource or file path of the image
+     * @return a future that completes with the image once it is loaded, or
+     * exceptionally with an {@link UncheckedIOException} if it can not be loaded
+     */
+    public static CompletableFuture<BufferedImage> load(final String location) {
+        final Entry entry;
+        synchronized (CACHE) {
+            final Entry cached = CACHE.get(location);
+            if (cached != null) return cached.image;
+            entry = new Entry(CompletableFuture.supplyAsync(() -> read(location), EXECUTOR));
+            CACHE.put(location, entry);
+        }
+        entry.image.whenComplete((image, failure) -> {
+            synchronized (CACHE) {
+                if (CACHE.get(location) != entry) return; // evicted or cleared meanwhile
+                if (failure != null) {
+                    CACHE.remove(location); // so that it may be loaded again
+                } else {
+                    entry.bytes = 4L * image.getWidth() * image.getHeight();
+                    cachedBytes += entry.bytes;
+                    evict();
+                }
+            }
+        });
+        return entry.image;
+    }
+
+    /**
+     * Sets how much memory the cached images may take. The least recently used
+     * images are evicted until they fit. The default capacity is 32 MB.
+     *
+     * @param bytes the capacity of the cache in bytes
+     */
+    public static void setCacheCapacity(long bytes) {
+        if (bytes < 0L) throw new IllegalArgumentException("The capacity must not be negative.");
+        synchronized (CACHE) {
+            capacity = bytes;
+            evict();
+        }
+    }
+
+    /**
+     * Evicts all the images from the cache. The images being loaded are still
+     * delivered to those who requested them.
+     */
+    public static void clearCache() {
+        synchronized (CACHE) {
+            CACHE.clear();
+            cachedBytes = 0L;
+        }
+    }
+
+    /**
+     * Evicts the least recently used images that are loaded until the cached
+     * images fit in the cache. Must be called while holding the lock on CACHE.
+     */
+    private static void evict() {
+        for (Iterator<Entry> it = CACHE.values().iterator(); cachedBytes > capacity && it.hasNext(); ) {
+            final Entry entry = it.next();
+            if (entry.bytes > 0L) {
+                it.remove();
+                cachedBytes -= entry.bytes;
+            }
+        }
+    }
+
+    private static BufferedImage read(String location) {
+        try {
+            final URL url = resolve(location);
+            try (InputStream in = url.openStream()) {
+                if (url.getPath().endsWith(".robi")) return RobotImage.readRobi(in, location);
+                final BufferedImage image = ImageIO.read(in);
+                if (image == null) throw new IOException(location + " is not an image.");
+                return image;
+            }
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+
+    private static URL resolve(String location) throws IOException {
+        try {
+            return new URL(location);
+        } catch (MalformedURLException e) {
+            // not a URL, but maybe a resource or a file
+        }
+        final ClassLoader loader = AssetManager.class.getClassLoader();
+        final URL resource = loader == null ? null
+                : loader.getResource(location.startsWith("/") ? location.substring(1) : location);
+        if (resource != null) return resource;
+        final File file = new File(location);
+        if (file.isFile()) return file.toURI().toURL();
+        throw new IOException("No image found at " + location);
+    }
+
+    private static final class Entry {
+
+        final CompletableFuture<BufferedImage> image;
+        long bytes; // the memory taken by the image, or 0 while it is being loaded; guarded by CACHE
+
+        Entry(CompletableFuture<BufferedImage> image) {
+            this.image = image;
+        }
+    }
+
+    private static final class DaemonThreadFactory implements ThreadFactory {
+
+        private final AtomicInteger count = new AtomicInteger();
+
+        @Override
+        public Thread newThread(Runnable r) {
+            Thread thread = new Thread(r, "Robot-assets-" + count.incrementAndGet());
+            thread.setDaemon(true);
+            return thread;
+        }
+    }
+}
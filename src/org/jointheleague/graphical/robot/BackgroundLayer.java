@@ -0,0 +1,69 @@
+package org.jointheleague.graphical.robot;
+
+import java.awt.*;
+import java.awt.image.BufferedImage;
+
+/**
+ * A retained image holding the background of a {@link RobotWindow}: the
+ * window's color and either the logo, in the top right corner, or a custom
+ * background image, scaled to the size of the window. The background is
+ * composed only when it has been invalidated (e.g., when the window's color
+ * or background image changes) or when the size of the window changes; on
+ * every frame, it is blitted in a single <code>drawImage</code> call. This
+ * class is used on the EDT only.
+ */
+class BackgroundLayer {
+
+    private static final int MARGIN = 10;
+
+    private BufferedImage image;
+    private boolean valid = false;
+
+    /**
+     * Marks the layer as stale so that it is composed again on the next frame.
+     */
+    void invalidate() {
+        valid = false;
+    }
+
+    /**
+     * Composes the layer if needed, and draws it.
+     *
+     * @param g2     the graphics context of the window
+     * @param color  the background color of the window
+     * @param logo   the logo or the custom background image, or null
+     * @param custom true if the image is a custom background image that covers the window
+     * @param width  the width of the window
+     * @param height the height of the window
+     */
+    void paint(Graphics2D g2, Color color, BufferedImage logo, boolean custom, int width, int height) {
+        if (width <= 0 || height <= 0) return;
+        if (image == null || image.getWidth() != width || image.getHeight() != height
+                || image.getTransparency() != color.getTransparency()) {
+            image = g2.getDeviceConfiguration().createCompatibleImage(width, height, color.getTransparency());
+            valid = false;
+        }
+        if (!valid) {
+            valid = true;
+            Graphics2D ig2 = image.createGraphics();
+            try {
+                ig2.setComposite(AlphaComposite.Src);
+                ig2.setColor(color);
+                ig2.fillRect(0, 0, width, height);
+                ig2.setComposite(AlphaComposite.SrcOver);
+                if (logo == null) {
+                    // no image could be loaded
+                } else if (custom) {
+                    ig2.setRenderingHint(RenderingHints.KEY_INTERPOLATION, RenderingHints.VALUE_INTERPOLATION_BILINEAR);
+                    ig2.setRenderingHint(RenderingHints.KEY_RENDERING, RenderingHints.VALUE_RENDER_QUALITY);
+                    ig2.drawImage(logo, 0, 0, width, height, null);
+                } else {
+                    ig2.drawImage(logo, width - logo.getWidth() - MARGIN, MARGIN, null);
+                }
+            } finally {
+                ig2.dispose();
+            }
+        }
+        g2.drawImage(image, 0, 0, null);
+    }
+}
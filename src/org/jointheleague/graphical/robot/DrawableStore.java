@@ -0,0 +1,622 @@
+package org.jointheleague.graphical.robot;
+
+import org.jointheleague.graphical.robot.curves.Cubic;
+import org.jointheleague.graphical.robot.curves.Drawable;
+import org.jointheleague.graphical.robot.curves.Line;
+import org.jointheleague.graphical.robot.curves.Quad;
+import org.jointheleague.graphical.robot.curves.StrokeCache;
+
+import java.awt.*;
+import java.awt.geom.CubicCurve2D;
+import java.awt.geom.Line2D;
+import java.awt.geom.Path2D;
+import java.awt.geom.QuadCurve2D;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * An append-only store of the drawables committed by a Robot.
+ * <p>
+ * Lines, quads and cubics, which make up almost all of a Robot's ink, are
+ * not kept as objects. Each of them is stored as a header, packed in an
+ * <code>int</code>, and its coordinates, in a <code>float</code> buffer.
+ * The header holds the type of the segment, the index of its color and line
+ * width in a palette of styles that is shared by all the segments in the
+ * store, and the offset of its coordinates. A segment that starts where the
+ * previous one ends, as is the case when a Robot draws without lifting its
+ * pen, does not store its starting point. Other drawables, e.g., filled
+ * paths, are kept as objects. Segments can be drawn directly from the
+ * arrays with {@link #draw(int, Graphics2D)}, while {@link #get(int)}
+ * creates an equivalent object. {@link #drawRun(int, int, Graphics2D)}
+ * strokes a run of connected segments in the same opaque style as one path,
+ * if their lines have round joins.
+ * </p>
+ * <p>
+ * The entries are kept in chunks that are never moved once they are full
+ * and their coordinates have been trimmed, and the number of entries is published through a volatile field after
+ * each append. A reader, typically the EDT, may therefore read
+ * {@link #size()} and iterate over that prefix without locking and without
+ * copying, while the Robot's thread keeps appending. The arrays of the chunk
+ * being filled are grown by copying, which preserves the published entries,
+ * and are published together in an immutable {@link Chunk}.
+ * </p>
+ * <p>
+ * There is no way to remove drawables. A Robot that clears its drawables
+ * replaces its store by a new one, so that readers that still hold the old
+ * store see a consistent prefix. Appending must be synchronized externally.
+ * </p>
+ * <p>
+ * Each drawable is stamped with the tick of the {@link LockstepClock} in which
+ * it was committed, which is used to order the drawables of several Robots.
+ * The stamps of a chunk are only stored once a drawable with a stamp other
+ * than 0 is added to it.
+ * </p>
+ * <p>
+ * A store may record its drawables in a {@link DrawingJournal}, in which case
+ * only the two most recent chunks of segments are kept on the heap, and older
+ * segments are read from the journal. A store that is created with a journal
+ * starts with the drawables already recorded in it, whose stamps are 0.
+ * </p>
+ */
+final class DrawableStore {
+
+    private static final int CHUNK_BITS = 10;
+    private static final int CHUNK_SIZE = 1 << CHUNK_BITS;
+    private static final int CHUNK_MASK = CHUNK_SIZE - 1;
+    private static final int INITIAL_CHUNK_SIZE = 16;
+
+    // the layout of a header; the segments are numbered like the segment types of PathIterator
+    private static final int OBJECT = 0;
+    private static final int LINE = 1;
+    private static final int QUAD = 2;
+    private static final int CUBIC = 3;
+    private static final int TYPE_MASK = 0x3;
+    private static final int CONNECTED = 0x4; // the segment starts where the previous one ends
+    private static final int OFFSET_SHIFT = 3;
+    private static final int OFFSET_MASK = 0x1FFF; // 13 bits, enough for 8 floats per entry
+    private static final int STYLE_SHIFT = 16;
+    private static final int MAX_STYLES = 1 << 16;
+    private static final Drawable NOTHING = g2 -> {
+    }; // stands for a drawable that was not recorded in the journal
+    private static final int RECENT_CHUNKS = 2; // the number of chunks kept on the heap when there is a journal
+
+    private volatile Chunk[] chunks = new Chunk[4];
+    private volatile Drawable[][] objectChunks = new Drawable[4][];
+    private volatile long[][] stampChunks = new long[4][];
+    private volatile Color[] colors = new Color[4];
+    private volatile BasicStroke[] strokes = new BasicStroke[4];
+    private volatile int size;
+    private final DrawingJournal journal;
+    private final int resumed; // the number of drawables that were in the journal when the store was created
+
+    // used by the writer only
+    private int numCoords = 0; // in the chunk being filled
+    private float endX;
+    private float endY;
+    private final Map<Long, Integer> styles = new HashMap<>();
+    private Color lastColor;
+    private int lastLineSize = -1;
+    private int lastStyle;
+    private final float[] record = new float[DrawingJournal.MAX_COORDS];
+
+    // used by draw(int, Graphics2D) and drawRun(int, int, Graphics2D) only
+    private final Line2D.Float line = new Line2D.Float();
+    private final QuadCurve2D.Float quad = new QuadCurve2D.Float();
+    private final CubicCurve2D.Float cubic = new CubicCurve2D.Float();
+    private final Path2D.Float run = new Path2D.Float();
+    private int journalRGB;
+    private int journalLineSize = -1;
+    private Color journalColor;
+    private BasicStroke journalStroke;
+
+    DrawableStore() {
+        this.journal = null;
+        this.resumed = 0;
+    }
+
+    /**
+     * Creates a store that records its drawables in a journal, and that starts with the drawables
+     * already recorded in the journal.
+     *
+     * @param journal the journal
+     */
+    DrawableStore(DrawingJournal journal) {
+        this.journal = journal;
+        this.resumed = journal.size();
+        final int numChunks = Math.max(4, 2 * ((resumed >>> CHUNK_BITS) + 1));
+        chunks = new Chunk[numChunks];
+        objectChunks = new Drawable[numChunks][];
+        stampChunks = new long[numChunks][];
+        size = resumed;
+    }
+
+    /**
+     * Appends a drawable. Calls to this method must be synchronized by the caller.
+     *
+     * @param drawable the drawable to append
+     * @param stamp    the tick in which the drawable was committed
+     */
+    void add(Drawable drawable, long stamp) {
+        final int n = size;
+        final int chunkIndex = n >>> CHUNK_BITS;
+        final int index = n & CHUNK_MASK;
+        if (chunkIndex == chunks.length) {
+            chunks = Arrays.copyOf(chunks, 2 * chunkIndex);
+            objectChunks = Arrays.copyOf(objectChunks, 2 * chunkIndex);
+            stampChunks = Arrays.copyOf(stampChunks, 2 * chunkIndex);
+        }
+        if (chunks[chunkIndex] == null) {
+            if (chunkIndex > 0 && chunks[chunkIndex - 1] != null) {
+                // the previous chunk is full, so that its coordinates no longer need room to grow
+                final Chunk full = chunks[chunkIndex - 1];
+                chunks[chunkIndex - 1] = new Chunk(full.headers, Arrays.copyOf(full.coords, numCoords));
+            }
+            if (journal != null && chunkIndex >= RECENT_CHUNKS) {
+                chunks[chunkIndex - RECENT_CHUNKS] = null; // its segments are read from the journal
+            }
+            chunks[chunkIndex] = new Chunk(new int[INITIAL_CHUNK_SIZE], new float[4 * INITIAL_CHUNK_SIZE]);
+            numCoords = 0;
+        }
+        final int header;
+        final int type = getType(drawable);
+        if (type == OBJECT) {
+            if (objectChunks[chunkIndex] == null) objectChunks[chunkIndex] = new Drawable[CHUNK_SIZE];
+            objectChunks[chunkIndex][index] = drawable;
+            if (journal != null) journal.append(OBJECT, 0, 0, stamp, record, 0);
+            header = OBJECT;
+        } else {
+            header = addSegment(drawable, type, chunkIndex, stamp);
+        }
+        Chunk chunk = chunks[chunkIndex];
+        if (index >= chunk.headers.length) {
+            final int length = Math.min(Math.max(2 * chunk.headers.length, index + 1), CHUNK_SIZE);
+            chunk = new Chunk(Arrays.copyOf(chunk.headers, length), chunk.coords);
+            chunks[chunkIndex] = chunk;
+        }
+        chunk.headers[index] = header;
+        if (stamp != 0L && journal == null) {
+            if (stampChunks[chunkIndex] == null) stampChunks[chunkIndex] = new long[CHUNK_SIZE];
+            stampChunks[chunkIndex][index] = stamp;
+        }
+        size = n + 1; // publishes the drawable
+    }
+
+    /**
+     * @return the type of a drawable, which is <code>OBJECT</code> if it can not be stored as a segment
+     */
+    private int getType(Drawable drawable) {
+        final Color color;
+        final int lineSize;
+        final int type;
+        if (drawable instanceof Line) {
+            color = ((Line) drawable).getColor();
+            lineSize = ((Line) drawable).getLineSize();
+            type = LINE;
+        } else if (drawable instanceof Quad) {
+            color = ((Quad) drawable).getColor();
+            lineSize = ((Quad) drawable).getLineSize();
+            type = QUAD;
+        } else if (drawable instanceof Cubic) {
+            color = ((Cubic) drawable).getColor();
+            lineSize = ((Cubic) drawable).getLineSize();
+            type = CUBIC;
+        } else {
+            return OBJECT;
+        }
+        if (color == null || lineSize < 0) return OBJECT;
+        if (color == lastColor && lineSize == lastLineSize) return type;
+        final Long key = ((long) lineSize << 32) | (color.getRGB() & 0xFFFFFFFFL);
+        Integer style = styles.get(key);
+        if (style == null) {
+            if (styles.size() == MAX_STYLES) return OBJECT;
+            style = styles.size();
+            addStyle(style, color, lineSize);
+            styles.put(key, style);
+        }
+        lastColor = color;
+        lastLineSize = lineSize;
+        lastStyle = style;
+        return type;
+    }
+
+    private void addStyle(int style, Color color, int lineSize) {
+        Color[] cs = colors;
+        BasicStroke[] ss = strokes;
+        if (style == cs.length) {
+            cs = Arrays.copyOf(cs, 2 * style);
+            ss = Arrays.copyOf(ss, 2 * style);
+        }
+        cs[style] = color;
+        ss[style] = StrokeCache.get(lineSize);
+        colors = cs;
+        strokes = ss;
+    }
+
+    /**
+     * Stores the coordinates of a segment, whose style is <code>lastStyle</code>.
+     *
+     * @return the header of the segment
+     */
+    private int addSegment(Drawable drawable, int type, int chunkIndex, long stamp) {
+        final float startX;
+        final float startY;
+        final float[] ctrlPoints;
+        switch (type) {
+            case LINE:
+                startX = ((Line) drawable).getStartX();
+                startY = ((Line) drawable).getStartY();
+                ctrlPoints = ((Line) drawable).getCtrlPoints();
+                break;
+            case QUAD:
+                startX = ((Quad) drawable).getStartX();
+                startY = ((Quad) drawable).getStartY();
+                ctrlPoints = ((Quad) drawable).getCtrlPoints();
+                break;
+            default:
+                startX = ((Cubic) drawable).getStartX();
+                startY = ((Cubic) drawable).getStartY();
+                ctrlPoints = ((Cubic) drawable).getCtrlPoints();
+        }
+        // the first segment of a chunk stores its starting point, so that chunks are independent
+        final boolean connected = numCoords > 0 && startX == endX && startY == endY;
+        final int offset = numCoords;
+        Chunk chunk = chunks[chunkIndex];
+        final int needed = offset + (connected ? 0 : 2) + ctrlPoints.length;
+        if (needed > chunk.coords.length) {
+            chunk = new Chunk(chunk.headers, Arrays.copyOf(chunk.coords, Math.max(2 * chunk.coords.length, needed)));
+            chunks[chunkIndex] = chunk;
+        }
+        final float[] coords = chunk.coords;
+        int i = offset;
+        if (!connected) {
+            coords[i++] = startX;
+            coords[i++] = startY;
+        }
+        System.arraycopy(ctrlPoints, 0, coords, i, ctrlPoints.length);
+        numCoords = needed;
+        endX = coords[needed - 2];
+        endY = coords[needed - 1];
+        if (journal != null) {
+            record[0] = startX;
+            record[1] = startY;
+            System.arraycopy(ctrlPoints, 0, record, 2, ctrlPoints.length);
+            journal.append(type, lastLineSize, lastColor.getRGB(), stamp, record, 2 + ctrlPoints.length);
+        }
+        return lastStyle << STYLE_SHIFT | offset << OFFSET_SHIFT | (connected ? CONNECTED : 0) | type;
+    }
+
+    /**
+     * @return the number of drawables that have been published so far
+     */
+    int size() {
+        return size;
+    }
+
+    /**
+     * Gets a drawable. The index must be less than a value previously returned by {@link #size()}.
+     * Lines, quads and cubics are created anew on each call.
+     *
+     * @param index the index of the drawable
+     * @return the drawable at the given index
+     */
+    Drawable get(int index) {
+        final int chunkIndex = index >>> CHUNK_BITS;
+        final Chunk chunk = chunks[chunkIndex];
+        if (index < resumed || chunk == null) return getFromJournal(index);
+        final int header = chunk.headers[index & CHUNK_MASK];
+        final int type = header & TYPE_MASK;
+        if (type == OBJECT) return objectChunks[chunkIndex][index & CHUNK_MASK];
+        final float[] coords = chunk.coords;
+        int i = header >>> OFFSET_SHIFT & OFFSET_MASK;
+        final int start = (header & CONNECTED) != 0 ? i - 2 : i;
+        if ((header & CONNECTED) == 0) i += 2;
+        final int style = header >>> STYLE_SHIFT;
+        final Color color = colors[style];
+        final int lineSize = (int) strokes[style].getLineWidth();
+        switch (type) {
+            case LINE:
+                return new Line(coords[start], coords[start + 1], Arrays.copyOfRange(coords, i, i + 2),
+                        lineSize, color);
+            case QUAD:
+                return new Quad(coords[start], coords[start + 1], Arrays.copyOfRange(coords, i, i + 4),
+                        lineSize, color);
+            default:
+                return new Cubic(coords[start], coords[start + 1], Arrays.copyOfRange(coords, i, i + 6),
+                        lineSize, color);
+        }
+    }
+
+    /**
+     * Draws a drawable without creating any objects if it is a line, quad or cubic. The index
+     * must be less than a value previously returned by {@link #size()}. This method must not
+     * be invoked by several threads at once.
+     *
+     * @param index the index of the drawable
+     * @param g2    the graphics context to draw in
+     */
+    void draw(int index, Graphics2D g2) {
+        final int chunkIndex = index >>> CHUNK_BITS;
+        final Chunk chunk = chunks[chunkIndex];
+        if (index < resumed || chunk == null) {
+            drawFromJournal(index, g2);
+            return;
+        }
+        final int header = chunk.headers[index & CHUNK_MASK];
+        final int type = header & TYPE_MASK;
+        if (type == OBJECT) {
+            objectChunks[chunkIndex][index & CHUNK_MASK].draw(g2);
+            return;
+        }
+        final float[] coords = chunk.coords;
+        int i = header >>> OFFSET_SHIFT & OFFSET_MASK;
+        final int start = (header & CONNECTED) != 0 ? i - 2 : i;
+        if ((header & CONNECTED) == 0) i += 2;
+        final int style = header >>> STYLE_SHIFT;
+        g2.setStroke(strokes[style]);
+        g2.setColor(colors[style]);
+        switch (type) {
+            case LINE:
+                line.setLine(coords[start], coords[start + 1], coords[i], coords[i + 1]);
+                g2.draw(line);
+                break;
+            case QUAD:
+                quad.setCurve(coords[start], coords[start + 1], coords[i], coords[i + 1],
+                        coords[i + 2], coords[i + 3]);
+                g2.draw(quad);
+                break;
+            default:
+                cubic.setCurve(coords[start], coords[start + 1], coords[i], coords[i + 1],
+                        coords[i + 2], coords[i + 3], coords[i + 4], coords[i + 5]);
+                g2.draw(cubic);
+        }
+    }
+
+    /**
+     * Draws a drawable like {@link #draw(int, Graphics2D)}, together with the segments that
+     * follow it, up to a given index, as long as each of them starts where the previous one
+     * ends and has the same style. The run is stroked as one path if its lines have round
+     * joins and its color is opaque, which Java2D does up to twice as fast as stroking each
+     * segment with round caps, and which looks the same, since round caps that overlap make
+     * a round join. Thinner lines are stroked faster one segment at a time, and translucent
+     * ink is stroked one segment at a time too, so that it looks the same however its
+     * segments are split between frames. This method must not be invoked by several threads
+     * at once.
+     *
+     * @param index the index of the first drawable, which must be less than <code>end</code>
+     * @param end   the index after the last drawable that may be drawn, which must not
+     *              exceed a value previously returned by {@link #size()}
+     * @param g2    the graphics context to draw in
+     * @return the index after the last drawable drawn
+     */
+    int drawRun(int index, int end, Graphics2D g2) {
+        final int chunkIndex = index >>> CHUNK_BITS;
+        final Chunk chunk = chunks[chunkIndex];
+        if (index < resumed || chunk == null) {
+            drawFromJournal(index, g2);
+            return index + 1;
+        }
+        final int header = chunk.headers[index & CHUNK_MASK];
+        final int style = header >>> STYLE_SHIFT;
+        if ((header & TYPE_MASK) == OBJECT || strokes[style].getLineJoin() != BasicStroke.JOIN_ROUND
+                || colors[style].getAlpha() != 0xff) {
+            draw(index, g2);
+            return index + 1;
+        }
+        // the segments of a chunk that start where the previous one ends are connected
+        final int chunkEnd = Math.min(end, (chunkIndex + 1) << CHUNK_BITS);
+        int last = index + 1;
+        while (last < chunkEnd) {
+            final int next = chunk.headers[last & CHUNK_MASK];
+            if ((next & TYPE_MASK) == OBJECT || (next & CONNECTED) == 0 || next >>> STYLE_SHIFT != style) break;
+            last++;
+        }
+        if (last == index + 1) {
+            draw(index, g2);
+            return last;
+        }
+        final float[] coords = chunk.coords;
+        int i = header >>> OFFSET_SHIFT & OFFSET_MASK;
+        if ((header & CONNECTED) != 0) i -= 2;
+        run.reset();
+        run.moveTo(coords[i], coords[i + 1]);
+        i += 2;
+        // the control points of connected segments follow each other
+        for (int k = index; k < last; k++) {
+            final int type = chunk.headers[k & CHUNK_MASK] & TYPE_MASK;
+            switch (type) {
+                case LINE:
+                    run.lineTo(coords[i], coords[i + 1]);
+                    break;
+                case QUAD:
+                    run.quadTo(coords[i], coords[i + 1], coords[i + 2], coords[i + 3]);
+                    break;
+                default:
+                    run.curveTo(coords[i], coords[i + 1], coords[i + 2], coords[i + 3], coords[i + 4], coords[i + 5]);
+            }
+            i += 2 * type;
+        }
+        g2.setStroke(strokes[style]);
+        g2.setColor(colors[style]);
+        g2.draw(run);
+        return last;
+    }
+
+    /**
+     * Gets the tick in which a drawable was committed. The index must be less than a value
+     * previously returned by {@link #size()}.
+     *
+     * @param index the index of the drawable
+     * @return the tick in which the drawable at the given index was committed
+     */
+    long getStamp(int index) {
+        if (journal != null) return index < resumed ? 0L : journal.getStamp(index);
+        final long[] stamps = stampChunks[index >>> CHUNK_BITS];
+        return stamps == null ? 0L : stamps[index & CHUNK_MASK];
+    }
+
+    /**
+     * Receives the drawables of a store, see {@link #visit(int, int, Visitor)}.
+     */
+    interface Visitor {
+
+        /**
+         * @param type   the type of the segment, i.e., <code>PathIterator.SEG_LINETO</code>,
+         *               <code>SEG_QUADTO</code> or <code>SEG_CUBICTO</code>
+         * @param coords the starting point followed by the control points, which are
+         *               only valid during the call
+         * @param color  the color of the segment
+         * @param stroke the stroke, whose width is the line size of the segment
+         */
+        void segment(int type, float[] coords, Color color, BasicStroke stroke);
+
+        /**
+         * @param drawable a drawable that is not a line, quad or cubic
+         */
+        void object(Drawable drawable);
+    }
+
+    /**
+     * Keeps the journal of this store, if any, from being cleared until {@link #endRead()}
+     * is invoked, so that the drawables can be visited while the Robot keeps drawing.
+     */
+    void beginRead() {
+        if (journal != null) journal.beginRead();
+    }
+
+    void endRead() {
+        if (journal != null) journal.endRead();
+    }
+
+    /**
+     * Passes a range of drawables to a visitor, in order, without creating objects
+     * for the lines, quads and cubics. Unlike {@link #draw(int, Graphics2D)}, this
+     * method may be invoked by any thread, between {@link #beginRead()} and
+     * {@link #endRead()} if the store has a journal. The end of the range must not
+     * exceed a value previously returned by {@link #size()}.
+     *
+     * @param from    the index of the first drawable
+     * @param to      the index after the last drawable
+     * @param visitor the visitor
+     */
+    void visit(int from, int to, Visitor visitor) {
+        final float[] segment = new float[DrawingJournal.MAX_COORDS];
+        int rgb = 0;
+        int lineSize = -1;
+        Color color = null;
+        BasicStroke stroke = null;
+        for (int index = from; index < to; index++) {
+            final int chunkIndex = index >>> CHUNK_BITS;
+            final Chunk chunk = chunks[chunkIndex];
+            if (index < resumed || chunk == null) {
+                final int type = journal.getType(index);
+                if (type == OBJECT) {
+                    final Drawable[] objects = index < resumed ? null : objectChunks[chunkIndex];
+                    if (objects != null) visitor.object(objects[index & CHUNK_MASK]);
+                    continue;
+                }
+                if (journal.getRGB(index) != rgb || journal.getLineSize(index) != lineSize || color == null) {
+                    rgb = journal.getRGB(index);
+                    lineSize = journal.getLineSize(index);
+                    color = new Color(rgb, true);
+                    stroke = StrokeCache.get(lineSize);
+                }
+                for (int i = 0; i < 2 + 2 * type; i++) {
+                    segment[i] = journal.getCoord(index, i);
+                }
+                visitor.segment(type, segment, color, stroke);
+                continue;
+            }
+            final int header = chunk.headers[index & CHUNK_MASK];
+            final int type = header & TYPE_MASK;
+            if (type == OBJECT) {
+                visitor.object(objectChunks[chunkIndex][index & CHUNK_MASK]);
+                continue;
+            }
+            int i = header >>> OFFSET_SHIFT & OFFSET_MASK;
+            final int start = (header & CONNECTED) != 0 ? i - 2 : i;
+            if ((header & CONNECTED) == 0) i += 2;
+            segment[0] = chunk.coords[start];
+            segment[1] = chunk.coords[start + 1];
+            System.arraycopy(chunk.coords, i, segment, 2, 2 * type);
+            final int style = header >>> STYLE_SHIFT;
+            visitor.segment(type, segment, colors[style], strokes[style]);
+        }
+    }
+
+    private Drawable getFromJournal(int index) {
+        final int type = journal.getType(index);
+        if (type == OBJECT) {
+            final Drawable[] objects = index < resumed ? null : objectChunks[index >>> CHUNK_BITS];
+            return objects == null ? NOTHING : objects[index & CHUNK_MASK];
+        }
+        final float startX = journal.getCoord(index, 0);
+        final float startY = journal.getCoord(index, 1);
+        final float[] ctrlPoints = new float[type == LINE ? 2 : type == QUAD ? 4 : 6];
+        for (int i = 0; i < ctrlPoints.length; i++) {
+            ctrlPoints[i] = journal.getCoord(index, 2 + i);
+        }
+        final int lineSize = journal.getLineSize(index);
+        final Color color = new Color(journal.getRGB(index), true);
+        switch (type) {
+            case LINE:
+                return new Line(startX, startY, ctrlPoints, lineSize, color);
+            case QUAD:
+                return new Quad(startX, startY, ctrlPoints, lineSize, color);
+            default:
+                return new Cubic(startX, startY, ctrlPoints, lineSize, color);
+        }
+    }
+
+    private void drawFromJournal(int index, Graphics2D g2) {
+        final int type = journal.getType(index);
+        if (type == OBJECT) {
+            final Drawable[] objects = index < resumed ? null : objectChunks[index >>> CHUNK_BITS];
+            if (objects != null) objects[index & CHUNK_MASK].draw(g2);
+            return;
+        }
+        final int rgb = journal.getRGB(index);
+        final int lineSize = journal.getLineSize(index);
+        if (rgb != journalRGB || lineSize != journalLineSize || journalColor == null) {
+            journalRGB = rgb;
+            journalLineSize = lineSize;
+            journalColor = new Color(rgb, true);
+            journalStroke = StrokeCache.get(lineSize);
+        }
+        g2.setStroke(journalStroke);
+        g2.setColor(journalColor);
+        final float x0 = journal.getCoord(index, 0);
+        final float y0 = journal.getCoord(index, 1);
+        switch (type) {
+            case LINE:
+                line.setLine(x0, y0, journal.getCoord(index, 2), journal.getCoord(index, 3));
+                g2.draw(line);
+                break;
+            case QUAD:
+                quad.setCurve(x0, y0, journal.getCoord(index, 2), journal.getCoord(index, 3),
+                        journal.getCoord(index, 4), journal.getCoord(index, 5));
+                g2.draw(quad);
+                break;
+            default:
+                cubic.setCurve(x0, y0, journal.getCoord(index, 2), journal.getCoord(index, 3),
+                        journal.getCoord(index, 4), journal.getCoord(index, 5),
+                        journal.getCoord(index, 6), journal.getCoord(index, 7));
+                g2.draw(cubic);
+        }
+    }
+
+    /**
+     * The headers and the coordinates of the segments in a chunk. Since the fields are final,
+     * a reader that sees a chunk also sees the entries that were stored in its arrays before
+     * it was created.
+     */
+    private static final class Chunk {
+        final int[] headers;
+        final float[] coords;
+
+        Chunk(int[] headers, float[] coords) {
+            this.headers = headers;
+            this.coords = coords;
+        }
+    }
+}
@@ -0,0 +1,242 @@
+package org.jointheleague.graphical.robot;
+
+import java.io.Closeable;
+import java.io.File;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.ByteOrder;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.util.Arrays;
+
+/**
+ * An append-only journal of the drawables committed by a Robot, kept in a
+ * memory-mapped file. A Robot that records its ink in a journal, see
+ * {@link Robot#setJournal(DrawingJournal)}, only keeps its most recent
+ * drawables on the heap, and the window's ink layer reads the older ones
+ * from the journal when it is rebuilt. Since the journal is a file, a
+ * drawing that runs for days does not exhaust the heap, and it survives a
+ * restart: reopening the journal and giving it to a Robot resumes the
+ * drawing where it was left.
+ * <p>
+ * Each drawable takes a record of fixed size, so that the drawable at a
+ * given index is found without searching. Lines, quads and cubics are
+ * recorded with their coordinates, color and line width. Other drawables,
+ * such as filled paths, can not be recorded; they are kept on the heap and
+ * are not restored when the journal is reopened. The number of records is
+ * updated after each record is written, so that a journal whose program
+ * was stopped holds all the drawables committed until then, though the
+ * operating system may not have written the last ones to disk unless
+ * {@link #flush()} has been invoked.
+ * </p>
+ * <p>
+ * A journal must not be used by several Robots at once.
+ * </p>
+ */
+public final class DrawingJournal implements Closeable {
+
+    private static final int MAGIC = 0x524A4E4C; // "RJNL"
+    private static final int VERSION = 1;
+    private static final int HEADER_SIZE = 16; // magic, version and number of records
+    private static final int COUNT_POSITION = 8;
+    static final int RECORD_SIZE = 48;
+    // the layout of a record
+    private static final int TYPE_POSITION = 0; // byte
+    private static final int WIDTH_POSITION = 2; // short
+    private static final int RGB_POSITION = 4; // int
+    private static final int STAMP_POSITION = 8; // long
+    private static final int COORDS_POSITION = 16; // up to 8 floats
+    static final int MAX_COORDS = 8;
+    private static final int REGION_BITS = 16;
+    private static final int REGION_RECORDS = 1 << REGION_BITS; // records per mapped region
+    private static final int REGION_MASK = REGION_RECORDS - 1;
+
+    private final File file;
+    private final RandomAccessFile raf;
+    private final FileChannel channel;
+    private final MappedByteBuffer header;
+    private volatile MappedByteBuffer[] regions = new MappedByteBuffer[0];
+    private volatile int size;
+    private int numReaders; // the exports reading the journal; guarded by this
+
+    private DrawingJournal(File file) throws IOException {
+        this.file = file;
+        raf = new RandomAccessFile(file, "rw");
+        channel = raf.getChannel();
+        try {
+            final boolean isNew = channel.size() == 0;
+            header = channel.map(FileChannel.MapMode.READ_WRITE, 0, HEADER_SIZE);
+            header.order(ByteOrder.LITTLE_ENDIAN);
+            if (isNew) {
+                header.putInt(0, MAGIC);
+                header.putInt(4, VERSION);
+                header.putLong(COUNT_POSITION, 0L);
+            } else if (header.getInt(0) != MAGIC || header.getInt(4) != VERSION) {
+                throw new IOException(file + " is not a drawing journal.");
+            }
+            final long count = header.getLong(COUNT_POSITION);
+            if (count < 0 || count > Integer.MAX_VALUE
+                    || HEADER_SIZE + count * RECORD_SIZE > channel.size()) {
+                throw new IOException(file + " is corrupt.");
+            }
+            size = (int) count;
+            for (int i = 0; i < size; i += REGION_RECORDS) {
+                addRegion();
+            }
+        } catch (IOException e) {
+            raf.close();
+            throw e;
+        }
+    }
+
+    /**
+     * Opens a journal, creating an empty one if the file does not exist.
+     *
+     * @param file the file holding the journal
+     * @return the journal
+     * @throws IOException if the file can not be opened or is not a journal
+     */
+    public static DrawingJournal open(File file) throws IOException {
+        return new DrawingJournal(file);
+    }
+
+    /**
+     * @return the file holding the journal
+     */
+    public File getFile() {
+        return file;
+    }
+
+    /**
+     * @return the number of drawables recorded in the journal
+     */
+    public int size() {
+        return size;
+    }
+
+    private void addRegion() throws IOException {
+        final MappedByteBuffer[] rs = regions;
+        final long position = HEADER_SIZE + (long) rs.length * REGION_RECORDS * RECORD_SIZE;
+        final MappedByteBuffer region = channel.map(FileChannel.MapMode.READ_WRITE, position,
+                (long) REGION_RECORDS * RECORD_SIZE);
+        region.order(ByteOrder.LITTLE_ENDIAN);
+        final MappedByteBuffer[] grown = Arrays.copyOf(rs, rs.length + 1);
+        grown[rs.length] = region;
+        regions = grown;
+    }
+
+    /**
+     * Appends a record. Calls to this method must be synchronized by the caller.
+     *
+     * @param type      the type of the drawable, as in {@link DrawableStore}
+     * @param lineSize  the line width
+     * @param rgb       the color, as returned by <code>Color.getRGB()</code>
+     * @param stamp     the tick in which the drawable was committed
+     * @param coords    the coordinates of the starting point and the control points
+     * @param numCoords the number of coordinates
+     */
+    void append(int type, int lineSize, int rgb, long stamp, float[] coords, int numCoords) {
+        final int n = size;
+        if (n == Integer.MAX_VALUE) throw new IllegalStateException("The journal is full.");
+        if (n >>> REGION_BITS == regions.length) {
+            try {
+                addRegion();
+            } catch (IOException e) {
+                throw new IllegalStateException("The journal " + file + " can not grow.", e);
+            }
+        }
+        final MappedByteBuffer region = regions[n >>> REGION_BITS];
+        final int position = (n & REGION_MASK) * RECORD_SIZE;
+        region.put(position + TYPE_POSITION, (byte) type);
+        region.putShort(position + WIDTH_POSITION, (short) lineSize);
+        region.putInt(position + RGB_POSITION, rgb);
+        region.putLong(position + STAMP_POSITION, stamp);
+        for (int i = 0; i < numCoords; i++) {
+            region.putFloat(position + COORDS_POSITION + 4 * i, coords[i]);
+        }
+        header.putLong(COUNT_POSITION, n + 1);
+        size = n + 1; // publishes the record
+    }
+
+    /**
+     * Empties the journal, unless it is being read, since the records appended
+     * afterwards would overwrite those being read. The file keeps its size.
+     *
+     * @return true if the journal was emptied, false if it is being read
+     */
+    synchronized boolean clear() {
+        if (numReaders > 0) return false;
+        header.putLong(COUNT_POSITION, 0L);
+        size = 0;
+        return true;
+    }
+
+    /**
+     * Keeps the journal from being cleared until {@link #endRead()} is invoked.
+     */
+    synchronized void beginRead() {
+        numReaders++;
+    }
+
+    synchronized void endRead() {
+        if (--numReaders == 0) notifyAll();
+    }
+
+    /**
+     * Waits until the journal is no longer being read.
+     *
+     * @throws InterruptedException if the thread is interrupted while waiting
+     */
+    synchronized void awaitReaders() throws InterruptedException {
+        while (numReaders > 0) {
+            wait();
+        }
+    }
+
+    int getType(int index) {
+        return regions[index >>> REGION_BITS].get((index & REGION_MASK) * RECORD_SIZE + TYPE_POSITION);
+    }
+
+    int getLineSize(int index) {
+        return regions[index >>> REGION_BITS].getShort((index & REGION_MASK) * RECORD_SIZE + WIDTH_POSITION);
+    }
+
+    int getRGB(int index) {
+        return regions[index >>> REGION_BITS].getInt((index & REGION_MASK) * RECORD_SIZE + RGB_POSITION);
+    }
+
+    long getStamp(int index) {
+        return regions[index >>> REGION_BITS].getLong((index & REGION_MASK) * RECORD_SIZE + STAMP_POSITION);
+    }
+
+    /**
+     * @param index the index of the record
+     * @param i     the index of the coordinate, where 0 and 1 are the coordinates of the starting point
+     * @return the coordinate
+     */
+    float getCoord(int index, int i) {
+        return regions[index >>> REGION_BITS].getFloat((index & REGION_MASK) * RECORD_SIZE + COORDS_POSITION + 4 * i);
+    }
+
+    /**
+     * Asks the operating system to write the journal to disk.
+     */
+    public void flush() {
+        header.force();
+        for (MappedByteBuffer region : regions) {
+            region.force();
+        }
+    }
+
+    /**
+     * Writes the journal to disk and closes the file. The mapped memory is released when the
+     * journal is no longer referenced, so the journal must not be used by a Robot anymore.
+     *
+     * @throws IOException if the file can not be closed
+     */
+    @Override
+    public void close() throws IOException {
+        flush();
+        raf.close();
+    }
+}
@@ -0,0 +1,156 @@
+package org.jointheleague.graphical.robot;
+
+import javax.swing.*;
+import java.awt.*;
+import java.awt.event.ActionEvent;
+import java.awt.event.ActionListener;
+import java.util.ArrayList;
+import java.util.IdentityHashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Drives all the Robots in a {@link RobotWindow} from a single Swing timer,
+ * whose delay is adjusted so that the frames do not drift behind the ticks.
+ * On every frame, each registered Robot is released one tick, the areas the
+ * Robots have damaged since the previous frame are merged, and the window is
+ * asked to repaint once.
+ * <p>
+ * Waking a Robot's thread costs about a microsecond, so waking every Robot of
+ * a swarm of many thousands on every frame would keep a processor busy on its
+ * own. When more than {@value #MAX_WAKE_UPS} Robots are registered, they are
+ * therefore released their ticks in turns: with <i>k</i> turns, each Robot is
+ * released <i>k</i> ticks on every <i>k</i>-th frame, which it takes without
+ * waiting, so that the Robots still advance one tick per frame on average, but
+ * a Robot's thread is only woken on every <i>k</i>-th frame.
+ * </p>
+ * <p>
+ * In turbo mode, Robots do not wait for the ticks released by the timer (see
+ * {@link Robot#enableTurboMode(int)}), and the window is only repainted at the
+ * turbo frame rate. Except for {@link #setTurbo(boolean, int)} and
+ * {@link #isTurbo()}, this class is used on the EDT only.
+ * </p>
+ */
+final class FrameScheduler implements ActionListener {
+
+    private static final int MAX_WAKE_UPS = 2500; // the most Robots released their ticks on a frame
+
+    private final RobotWindow window;
+    private final List<Robot> robots = new ArrayList<>();
+    private final Map<Robot, Integer> indices = new IdentityHashMap<>(); // the index of each Robot in robots
+    private final Timer timer;
+    private volatile boolean turbo = false;
+    private volatile int turboFrameRate = 0;
+    private long lastFrameTime = 0L; // in nanoseconds
+    private long nextFrameTime = 0L; // the time at which the next frame is due, in nanoseconds, or 0
+    private Rectangle pendingDamage = null;
+    private int frame = 0; // counts the frames, to take turns
+
+    FrameScheduler(RobotWindow window) {
+        this.window = window;
+        this.timer = new Timer(Robot.TICK_LENGTH, this);
+    }
+
+    /**
+     * Starts releasing ticks to a Robot. The timer is started when the first
+     * Robot is registered.
+     *
+     * @param robot the Robot
+     */
+    void register(Robot robot) {
+        if (indices.putIfAbsent(robot, robots.size()) != null) return;
+        robots.add(robot);
+        if (!timer.isRunning()) {
+            nextFrameTime = 0L;
+            timer.start();
+        }
+    }
+
+    /**
+     * Stops releasing ticks to a Robot. The timer is stopped when the last
+     * Robot is unregistered. The last Robot registered takes the place of the
+     * Robot, so that unregistering takes constant time; the order in which the
+     * Robots are released their ticks does not matter.
+     *
+     * @param robot the Robot
+     */
+    void unregister(Robot robot) {
+        final Integer index = indices.remove(robot);
+        if (index == null) return;
+        final Robot last = robots.remove(robots.size() - 1);
+        if (last != robot) {
+            robots.set(index, last);
+            indices.put(last, index);
+        }
+        if (robots.isEmpty()) timer.stop();
+    }
+
+    /**
+     * Adds a listener that is notified on the EDT on every frame, e.g., to paint
+     * the window offscreen at the frame rate.
+     *
+     * @param listener the listener
+     */
+    void addFrameListener(ActionListener listener) {
+        timer.addActionListener(listener);
+    }
+
+    /**
+     * Switches turbo mode on or off. May be invoked from any thread.
+     *
+     * @param turbo           true to switch turbo mode on
+     * @param framesPerSecond the frame rate in turbo mode, or 0 to repaint only after
+     *                        turbo mode has been switched off
+     */
+    void setTurbo(boolean turbo, int framesPerSecond) {
+        this.turboFrameRate = Math.max(0, framesPerSecond);
+        this.turbo = turbo;
+    }
+
+    /**
+     * @return true if in turbo mode
+     */
+    boolean isTurbo() {
+        return turbo;
+    }
+
+    @Override
+    public void actionPerformed(ActionEvent e) {
+        keepPace(System.nanoTime());
+        final int n = robots.size();
+        final int turns = (n + MAX_WAKE_UPS - 1) / MAX_WAKE_UPS;
+        final int turn = turns > 1 ? Math.floorMod(frame++, turns) : 0;
+        for (int i = 0; i < n; i++) {
+            Rectangle robotDamage = robots.get(i).tick(i % turns == turn ? turns : 0);
+            if (robotDamage == null) continue;
+            if (pendingDamage == null) {
+                pendingDamage = robotDamage;
+            } else {
+                pendingDamage.add(robotDamage);
+            }
+        }
+        final long now = System.nanoTime();
+        if (turbo) {
+            final int frameRate = turboFrameRate;
+            if (frameRate == 0 || now - lastFrameTime < 1_000_000_000L / frameRate) return;
+        }
+        lastFrameTime = now;
+        window.repaintDamage(pendingDamage);
+        pendingDamage = null;
+    }
+
+    /**
+     * Adjusts the delay of the timer so that the frames are, on average, one tick
+     * apart. A Swing timer waits its delay from the time at which it wakes up, so
+     * every time it wakes up late the following frames are delayed, and on a busy
+     * machine the Robots would move noticeably slower than intended. A frame that
+     * is more than a tick late is not caught up with, since the Robots could not
+     * use the ticks missed anyway.
+     */
+    private void keepPace(long now) {
+        final long tick = Robot.TICK_LENGTH * 1_000_000L;
+        if (nextFrameTime == 0L || now - nextFrameTime > tick) nextFrameTime = now;
+        nextFrameTime += tick;
+        timer.setDelay((int) Math.max(1L, Math.min(Robot.TICK_LENGTH, (nextFrameTime - now) / 1_000_000L)));
+    }
+}
@@ -0,0 +1,33 @@
+package org.jointheleague.graphical.robot;
+
+import java.awt.*;
+
+/**
+ * Renders a {@link RobotWindow} into an offscreen image instead of showing it
+ * on the screen. Nothing is painted until a frame is requested through
+ * {@link RobotWindow#snapshot()}, so Robots run without any rendering cost in between.
+ * This canvas is used when <code>java.awt.headless=true</code>.
+ */
+final class ImageCanvas implements RobotCanvas {
+
+    private final RobotWindow window;
+
+    ImageCanvas(RobotWindow window) {
+        this.window = window;
+    }
+
+    @Override
+    public void build(int width, int height) {
+        window.setSize(width, height);
+    }
+
+    @Override
+    public void setSize(int width, int height) {
+        window.setSize(width, height);
+    }
+
+    @Override
+    public void repaint(Rectangle area) {
+        // nothing to do; the frame is painted when a snapshot is taken
+    }
+}
@@ -0,0 +1,439 @@
+package org.jointheleague.graphical.robot;
+
+import org.jointheleague.graphical.robot.curves.Drawable;
+import org.jointheleague.graphical.robot.curves.DynamicPath;
+import org.jointheleague.graphical.robot.curves.StrokeCache;
+
+import java.awt.*;
+import java.awt.geom.CubicCurve2D;
+import java.awt.geom.Line2D;
+import java.awt.geom.Path2D;
+import java.awt.geom.PathIterator;
+import java.awt.geom.QuadCurve2D;
+import java.awt.geom.Rectangle2D;
+import java.awt.image.BufferedImage;
+import java.awt.image.DataBufferInt;
+import java.io.Closeable;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.Writer;
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+import java.util.List;
+import java.util.zip.CRC32;
+import java.util.zip.Deflater;
+import java.util.zip.DeflaterOutputStream;
+
+/**
+ * Writes the ink of the Robots in a {@link RobotWindow}, i.e., the drawables
+ * that they have committed, to a file in SVG or PNG format. The exporter
+ * holds the number of drawables that each Robot had committed when it was
+ * created, and writes those only, in the order of the Robots, while the
+ * Robots go on drawing. Neither format is built in memory: the drawables
+ * are streamed from the Robots' stores to the file, so that a drawing with
+ * millions of segments can be exported with little memory.
+ * <p>
+ * In SVG, the segments that have the same color and width are written as
+ * the subpaths of a single path element. Each segment is a subpath of its
+ * own, so that it has caps at both ends, as when it is drawn in the window.
+ * Filled and outlined paths are written as paths too. Other drawables are
+ * left out.
+ * </p>
+ * <p>
+ * In PNG, the ink is rendered at any scale, on a transparent background, in
+ * strips that span the width of the image and that are compressed as soon as
+ * they are rendered. Only the drawables that overlap a strip are drawn in it.
+ * </p>
+ */
+final class InkExporter implements Closeable {
+
+    private static final int STRIP_PIXELS = 1 << 22; // at most, in a strip of the PNG image
+    private static final int MAX_SUBPATHS = 1000; // in a path element of the SVG document
+    private static final byte[] PNG_SIGNATURE = {(byte) 0x89, 'P', 'N', 'G', '\r', '\n', 0x1A, '\n'};
+    private static final int IDAT_SIZE = 1 << 16;
+
+    private final DrawableStore[] stores;
+    private final int[] sizes;
+    private final int width;
+    private final int height;
+
+    /**
+     * The journals of the Robots that record their drawables in one are not cleared
+     * until the exporter is closed, since the drawables committed after clearing a
+     * journal overwrite the ones being exported.
+     *
+     * @param robots the Robots whose ink is exported
+     * @param width  the width of the window
+     * @param height the height of the window
+     */
+    InkExporter(List<Robot> robots, int width, int height) {
+        stores = new DrawableStore[robots.size()];
+        sizes = new int[robots.size()];
+        for (int i = 0; i < stores.length; i++) {
+            stores[i] = robots.get(i).beginReadingCommittedDrawables();
+            sizes[i] = stores[i].size();
+        }
+        this.width = width;
+        this.height = height;
+    }
+
+    /**
+     * Lets the Robots clear their journals again.
+     */
+    @Override
+    public void close() {
+        for (DrawableStore store : stores) {
+            store.endRead();
+        }
+    }
+
+    /**
+     * Writes the ink in SVG format. The writer is not closed.
+     *
+     * @param out the writer
+     * @throws IOException if the ink can not be written
+     */
+    void writeSvg(Writer out) throws IOException {
+        out.write("<?xml version=\"1.0\" encoding=\"UTF-8\"?>\n");
+        out.write("<svg xmlns=\"http://www.w3.org/2000/svg\" width=\"" + width + "\" height=\"" + height
+                + "\" viewBox=\"0 0 " + width + " " + height + "\">\n");
+        // the caps and joins of BasicStroke's defaults, which wider lines override
+        out.write("<g fill=\"none\" stroke-linecap=\"square\" stroke-linejoin=\"miter\" stroke-miterlimit=\"10\">\n");
+        final SvgWriter svg = new SvgWriter(out);
+        for (int i = 0; i < stores.length; i++) {
+            stores[i].visit(0, sizes[i], svg);
+            svg.endPath();
+        }
+        if (svg.error != null) throw svg.error;
+        out.write("</g>\n</svg>\n");
+        out.flush();
+    }
+
+    /**
+     * Writes the ink in PNG format. The stream is not closed.
+     *
+     * @param out   the stream
+     * @param scale the size of a pixel of the window in the image, e.g., 4 to export the
+     *              ink at four times the window's resolution
+     * @throws IOException if the ink can not be written
+     */
+    void writePng(OutputStream out, double scale) throws IOException {
+        if (!(scale > 0)) throw new IllegalArgumentException("The scale must be positive.");
+        final long w = (long) Math.ceil(width * scale);
+        final long h = (long) Math.ceil(height * scale);
+        if (w <= 0 || h <= 0 || w > (Integer.MAX_VALUE - 1) / 4 || h > Integer.MAX_VALUE) {
+            throw new IllegalArgumentException("The image would be " + w + " by " + h + " pixels.");
+        }
+        final int imageWidth = (int) w;
+        final int imageHeight = (int) h;
+        final int stripHeight = Math.max(1, Math.min(imageHeight, STRIP_PIXELS / imageWidth));
+        final BufferedImage strip = new BufferedImage(imageWidth, stripHeight, BufferedImage.TYPE_INT_ARGB);
+        final int[] pixels = ((DataBufferInt) strip.getRaster().getDataBuffer()).getData();
+        final byte[] row = new byte[1 + 4 * imageWidth]; // the filter type, then RGBA
+
+        final DataOutputStream png = new DataOutputStream(out);
+        png.write(PNG_SIGNATURE);
+        final DataOutputStream header = new DataOutputStream(new ChunkOutputStream(png, "IHDR", 13));
+        header.writeInt(imageWidth);
+        header.writeInt(imageHeight);
+        header.write(new byte[]{8, 6, 0, 0, 0}); // 8 bits per sample, RGBA, deflate, no filter, no interlace
+        header.close();
+        final Deflater deflater = new Deflater();
+        try (DeflaterOutputStream idat = new DeflaterOutputStream(
+                new ChunkOutputStream(png, "IDAT", IDAT_SIZE), deflater, IDAT_SIZE)) {
+            for (int y0 = 0; y0 < imageHeight; y0 += stripHeight) {
+                Arrays.fill(pixels, 0);
+                renderStrip(strip, y0, scale);
+                final int rows = Math.min(stripHeight, imageHeight - y0);
+                for (int y = 0; y < rows; y++) {
+                    for (int x = 0, i = y * imageWidth, j = 1; x < imageWidth; x++, i++) {
+                        final int argb = pixels[i];
+                        row[j++] = (byte) (argb >>> 16);
+                        row[j++] = (byte) (argb >>> 8);
+                        row[j++] = (byte) argb;
+                        row[j++] = (byte) (argb >>> 24);
+                    }
+                    idat.write(row);
+                }
+            }
+        } finally {
+            deflater.end();
+        }
+        new ChunkOutputStream(png, "IEND", 0).close();
+        png.flush();
+    }
+
+    private void renderStrip(BufferedImage strip, int y0, double scale) {
+        final Graphics2D g2 = strip.createGraphics();
+        try {
+            g2.setRenderingHint(RenderingHints.KEY_ANTIALIASING, RenderingHints.VALUE_ANTIALIAS_ON);
+            g2.translate(0, -y0);
+            g2.scale(scale, scale);
+            final StripPainter painter = new StripPainter(g2, new Rectangle2D.Double(
+                    0, y0 / scale, strip.getWidth() / scale, strip.getHeight() / scale));
+            for (int i = 0; i < stores.length; i++) {
+                stores[i].visit(0, sizes[i], painter);
+            }
+        } finally {
+            g2.dispose();
+        }
+    }
+
+    /**
+     * Draws the drawables that overlap a strip of the image.
+     */
+    private static final class StripPainter implements DrawableStore.Visitor {
+
+        private final Graphics2D g2;
+        private final Rectangle2D bounds; // of the strip, in the window's coordinates
+        private final Line2D.Float line = new Line2D.Float();
+        private final QuadCurve2D.Float quad = new QuadCurve2D.Float();
+        private final CubicCurve2D.Float cubic = new CubicCurve2D.Float();
+
+        StripPainter(Graphics2D g2, Rectangle2D bounds) {
+            this.g2 = g2;
+            this.bounds = bounds;
+        }
+
+        @Override
+        public void segment(int type, float[] coords, Color color, BasicStroke stroke) {
+            // a segment lies within the convex hull of its control points, plus the width of its caps
+            float minX = coords[0];
+            float minY = coords[1];
+            float maxX = minX;
+            float maxY = minY;
+            for (int i = 2; i < 2 + 2 * type; i += 2) {
+                minX = Math.min(minX, coords[i]);
+                minY = Math.min(minY, coords[i + 1]);
+                maxX = Math.max(maxX, coords[i]);
+                maxY = Math.max(maxY, coords[i + 1]);
+            }
+            final float margin = stroke.getLineWidth() + 1F;
+            if (maxX + margin < bounds.getMinX() || minX - margin > bounds.getMaxX()
+                    || maxY + margin < bounds.getMinY() || minY - margin > bounds.getMaxY()) {
+                return;
+            }
+            g2.setStroke(stroke);
+            g2.setColor(color);
+            switch (type) {
+                case PathIterator.SEG_LINETO:
+                    line.setLine(coords[0], coords[1], coords[2], coords[3]);
+                    g2.draw(line);
+                    break;
+                case PathIterator.SEG_QUADTO:
+                    quad.setCurve(coords[0], coords[1], coords[2], coords[3], coords[4], coords[5]);
+                    g2.draw(quad);
+                    break;
+                default:
+                    cubic.setCurve(coords[0], coords[1], coords[2], coords[3], coords[4], coords[5],
+                            coords[6], coords[7]);
+                    g2.draw(cubic);
+            }
+        }
+
+        @Override
+        public void object(Drawable drawable) {
+            if (drawable instanceof DynamicPath && !((DynamicPath) drawable).getBounds().intersects(bounds)) {
+                return;
+            }
+            drawable.draw(g2);
+        }
+    }
+
+    /**
+     * Writes the drawables as SVG paths. Since a visitor can not throw an IOException,
+     * the first one is kept and the following drawables are skipped.
+     */
+    private static final class SvgWriter implements DrawableStore.Visitor {
+
+        private static final char[] COMMANDS = {'M', 'L', 'Q', 'C'}; // by PathIterator segment type
+
+        private final Writer out;
+        private final StringBuilder number = new StringBuilder();
+        private IOException error;
+        private Color pathColor; // of the path element being written, or null if there is none
+        private float pathWidth;
+        private int numSubpaths;
+
+        SvgWriter(Writer out) {
+            this.out = out;
+        }
+
+        @Override
+        public void segment(int type, float[] coords, Color color, BasicStroke stroke) {
+            if (error != null) return;
+            try {
+                final float lineWidth = stroke.getLineWidth();
+                if (!color.equals(pathColor) || lineWidth != pathWidth || numSubpaths == MAX_SUBPATHS) {
+                    endPath();
+                    out.write("<path");
+                    writePaint("stroke", color);
+                    out.write(" stroke-width=\"");
+                    writeNumber(lineWidth);
+                    out.write('"');
+                    writeCapsAndJoins(stroke);
+                    out.write(" d=\"");
+                    pathColor = color;
+                    pathWidth = lineWidth;
+                }
+                out.write('M');
+                writeNumber(coords[0]);
+                out.write(' ');
+                writeNumber(coords[1]);
+                out.write(COMMANDS[type]);
+                for (int i = 2; i < 2 + 2 * type; i++) {
+                    if (i > 2) out.write(' ');
+                    writeNumber(coords[i]);
+                }
+                numSubpaths++;
+            } catch (IOException e) {
+                error = e;
+            }
+        }
+
+        @Override
+        public void object(Drawable drawable) {
+            if (error != null || !(drawable instanceof DynamicPath)) return;
+            final DynamicPath path = (DynamicPath) drawable;
+            if (path.getColor() == null) return;
+            final Path2D traced = path.getTracedPath();
+            try {
+                endPath();
+                out.write("<path");
+                if (path.isFill()) {
+                    writePaint("fill", path.getColor());
+                    if (traced.getWindingRule() == PathIterator.WIND_EVEN_ODD) {
+                        out.write(" fill-rule=\"evenodd\"");
+                    }
+                } else {
+                    writePaint("stroke", path.getColor());
+                    out.write(" stroke-width=\"" + path.getLineSize() + "\"");
+                    writeCapsAndJoins(StrokeCache.get(path.getLineSize()));
+                }
+                out.write(" d=\"");
+                final float[] coords = new float[6];
+                for (PathIterator it = traced.getPathIterator(null); !it.isDone(); it.next()) {
+                    final int type = it.currentSegment(coords);
+                    if (type == PathIterator.SEG_CLOSE) {
+                        out.write('Z');
+                        continue;
+                    }
+                    out.write(COMMANDS[type]);
+                    for (int i = 0; i < (type == PathIterator.SEG_MOVETO ? 2 : 2 * type); i++) {
+                        if (i > 0) out.write(' ');
+                        writeNumber(coords[i]);
+                    }
+                }
+                out.write("\"/>\n");
+            } catch (IOException e) {
+                error = e;
+            }
+        }
+
+        /**
+         * Ends the path element being written, if any.
+         */
+        void endPath() {
+            if (error != null || pathColor == null) return;
+            try {
+                out.write("\"/>\n");
+            } catch (IOException e) {
+                error = e;
+            }
+            pathColor = null;
+            numSubpaths = 0;
+        }
+
+        private void writeCapsAndJoins(BasicStroke stroke) throws IOException {
+            if (stroke.getEndCap() == BasicStroke.CAP_ROUND) out.write(" stroke-linecap=\"round\"");
+            if (stroke.getLineJoin() == BasicStroke.JOIN_ROUND) out.write(" stroke-linejoin=\"round\"");
+        }
+
+        private void writePaint(String attribute, Color color) throws IOException {
+            out.write(' ');
+            out.write(attribute);
+            out.write("=\"#");
+            out.write(String.format("%06x", color.getRGB() & 0xFFFFFF));
+            out.write('"');
+            if (color.getAlpha() < 255) {
+                out.write(' ');
+                out.write(attribute);
+                out.write("-opacity=\"");
+                writeNumber(color.getAlpha() / 255F);
+                out.write('"');
+            }
+        }
+
+        /**
+         * Writes a number without a trailing ".0", as SVG documents are usually written.
+         */
+        private void writeNumber(float f) throws IOException {
+            number.setLength(0);
+            number.append(f);
+            final int length = number.length();
+            if (length > 2 && number.charAt(length - 2) == '.' && number.charAt(length - 1) == '0') {
+                number.setLength(length - 2);
+            }
+            out.append(number);
+        }
+    }
+
+    /**
+     * Writes data in PNG chunks of a given type, each with its length and checksum.
+     */
+    private static final class ChunkOutputStream extends OutputStream {
+
+        private final DataOutputStream out;
+        private final byte[] type;
+        private final byte[] buffer;
+        private int count;
+        private final CRC32 crc = new CRC32();
+
+        /**
+         * @param capacity the size of the chunks, except the last one
+         */
+        ChunkOutputStream(DataOutputStream out, String type, int capacity) {
+            this.out = out;
+            this.type = type.getBytes(StandardCharsets.US_ASCII);
+            this.buffer = new byte[capacity];
+        }
+
+        @Override
+        public void write(int b) throws IOException {
+            if (count == buffer.length) writeChunk();
+            buffer[count++] = (byte) b;
+        }
+
+        @Override
+        public void write(byte[] b, int off, int len) throws IOException {
+            while (len > 0) {
+                if (count == buffer.length) writeChunk();
+                final int n = Math.min(len, buffer.length - count);
+                System.arraycopy(b, off, buffer, count, n);
+                count += n;
+                off += n;
+                len -= n;
+            }
+        }
+
+        private void writeChunk() throws IOException {
+            out.writeInt(count);
+            out.write(type);
+            out.write(buffer, 0, count);
+            crc.reset();
+            crc.update(type);
+            crc.update(buffer, 0, count);
+            out.writeInt((int) crc.getValue());
+            count = 0;
+        }
+
+        /**
+         * Writes the last chunk, which may be empty, but does not close the underlying stream.
+         */
+        @Override
+        public void close() throws IOException {
+            writeChunk();
+        }
+    }
+}
@@ -0,0 +1,144 @@
+package org.jointheleague.graphical.robot;
+
+import java.awt.*;
+import java.awt.image.BufferedImage;
+import java.util.Arrays;
+import java.util.IdentityHashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * A retained, transparent image holding the ink that the Robots in a
+ * {@link RobotWindow} have committed so far. Each committed drawable is
+ * rasterized only once; on every frame, the layer is brought up to date
+ * with the drawables committed since the previous frame and is then blitted
+ * in a single <code>drawImage</code> call.
+ * <p>
+ * The drawables of Robots that run in lockstep with a {@link LockstepClock}
+ * are added to the layer only once the tick in which they were committed is
+ * complete, ordered by tick and then by the order of the Robots. Until then,
+ * they are drawn on top of the layer on every frame.
+ * </p>
+ * <p>
+ * The layer is rebuilt from scratch when it has been invalidated (e.g., when a
+ * Robot clears its drawables) or when the size of the window changes. Since
+ * the layer is transparent, changing the window's background does not affect
+ * it. Except for {@link #invalidate()}, this class is used on the EDT only.
+ * </p>
+ */
+class InkLayer {
+
+    private BufferedImage image;
+    private volatile boolean valid = false;
+    // the number of committed drawables of each Robot that are in the layer
+    private final Map<Robot, int[]> cursors = new IdentityHashMap<>();
+    // the Robots in lockstep that have drawables not yet in the layer, and their cursors; reused between frames
+    private Robot[] pending = new Robot[16];
+    private int[][] pendingCursors = new int[16][];
+
+    /**
+     * Marks the layer as stale so that it is rebuilt from all the Robots'
+     * drawables on the next frame. This method may be invoked from any thread.
+     */
+    void invalidate() {
+        valid = false;
+    }
+
+    /**
+     * Brings the layer up to date with the drawables committed by the Robots
+     * and draws it.
+     *
+     * @param g2     the graphics context of the window
+     * @param robots the Robots whose ink is drawn
+     * @param width  the width of the window
+     * @param height the height of the window
+     */
+    void paint(Graphics2D g2, List<Robot> robots, int width, int height) {
+        if (width <= 0 || height <= 0) return;
+        if (image == null || image.getWidth() != width || image.getHeight() != height) {
+            image = g2.getDeviceConfiguration().createCompatibleImage(width, height, Transparency.TRANSLUCENT);
+            valid = false;
+        }
+        int numPending = 0;
+        Graphics2D ig2 = image.createGraphics();
+        try {
+            if (!valid) {
+                valid = true;
+                ig2.setComposite(AlphaComposite.Clear);
+                ig2.fillRect(0, 0, width, height);
+                ig2.setComposite(AlphaComposite.SrcOver);
+                cursors.clear();
+            }
+            ig2.setRenderingHint(RenderingHints.KEY_ANTIALIASING, RenderingHints.VALUE_ANTIALIAS_ON);
+            for (Robot robot : robots) {
+                DrawableStore committed = robot.getCommittedDrawables();
+                int[] cursor = cursors.get(robot);
+                if (cursor == null) {
+                    cursor = new int[1];
+                    cursors.put(robot, cursor);
+                }
+                if (robot.getInkClock() == null) {
+                    drawUpTo(ig2, cursor, committed, Long.MAX_VALUE);
+                } else if (cursor[0] < committed.size()) {
+                    if (numPending == pending.length) {
+                        pending = Arrays.copyOf(pending, 2 * numPending);
+                        pendingCursors = Arrays.copyOf(pendingCursors, 2 * numPending);
+                    }
+                    pending[numPending] = robot;
+                    pendingCursors[numPending++] = cursor;
+                }
+            }
+            mergeCompletedTicks(ig2, numPending);
+        } finally {
+            ig2.dispose();
+        }
+        g2.drawImage(image, 0, 0, null);
+        for (int k = 0; k < numPending; k++) {
+            DrawableStore committed = pending[k].getCommittedDrawables();
+            final int size = committed.size();
+            for (int i = pendingCursors[k][0]; i < size; ) {
+                i = committed.drawRun(i, size, g2);
+            }
+            pending[k] = null;
+        }
+    }
+
+    /**
+     * Adds the drawables of the Robots that have been in lockstep to the layer, one tick
+     * at a time, up to the last tick completed by each Robot's clock.
+     */
+    private void mergeCompletedTicks(Graphics2D ig2, int numPending) {
+        while (true) {
+            long tick = Long.MAX_VALUE;
+            for (int k = 0; k < numPending; k++) {
+                Robot robot = pending[k];
+                DrawableStore committed = robot.getCommittedDrawables();
+                final int cursor = pendingCursors[k][0];
+                if (cursor < committed.size()) {
+                    long stamp = committed.getStamp(cursor);
+                    if (stamp < robot.getInkClock().getTick()) tick = Math.min(tick, stamp);
+                }
+            }
+            if (tick == Long.MAX_VALUE) return;
+            for (int k = 0; k < numPending; k++) {
+                drawUpTo(ig2, pendingCursors[k], pending[k].getCommittedDrawables(), tick + 1);
+            }
+        }
+    }
+
+    /**
+     * Draws a Robot's drawables starting at its cursor, up to the first drawable
+     * stamped at or after the given tick, and advances the cursor.
+     */
+    private static void drawUpTo(Graphics2D ig2, int[] cursor, DrawableStore committed, long tick) {
+        final int size = committed.size();
+        int end = cursor[0];
+        while (end < size && committed.getStamp(end) < tick) {
+            end++;
+        }
+        for (int i = cursor[0]; i < end; ) {
+            i = committed.drawRun(i, end, ig2);
+        }
+        cursor[0] = end;
+    }
+}
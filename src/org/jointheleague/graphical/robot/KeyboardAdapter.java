@@ -25,8 +25,9 @@ import java.awt.event.KeyListener;
  * it controls.
  * </p>
  * <p>
- * A KeyboardAdapter controls the Robot from its own thread. It is not possible
- * to have more than one KeyboardAdapter controlling the <em>same</em> Robot.
+ * A KeyboardAdapter controls the Robot from its own thread, which is started
+ * with {@link RobotLauncher}. It is not possible to have more than one
+ * KeyboardAdapter controlling the <em>same</em> Robot.
  * </p>
  * <p>
  * Example of how to use:
@@ -65,7 +66,7 @@ public class KeyboardAdapter implements KeyListener, Runnable {
 	
 	public void setRobot(Robot robot) {
 		this.robot = robot;
-		new Thread(this).start();
+		RobotLauncher.launch(this);
 	}
 
 	@Override
@@ -89,6 +90,7 @@ public class KeyboardAdapter implements KeyListener, Runnable {
 				System.out.println(e.getMessage());
 			}
 		}
+		robot.sealTrail();
 	}
 
 	/**
@@ -0,0 +1,91 @@
+package org.jointheleague.graphical.robot;
+
+import java.util.concurrent.Phaser;
+
+/**
+ * <p>
+ * A clock that makes several Robots advance in lockstep. A Robot that has been
+ * added to a LockstepClock does not start a new tick before every other Robot
+ * added to the same clock has finished the current one, regardless of how the
+ * threads controlling the Robots are scheduled. The drawables that the Robots
+ * commit are also put in the window's ink in the order of the ticks in which
+ * they were committed, and Robots that commit in the same tick are ordered by
+ * the order in which they were created. Scenes with several Robots are
+ * therefore reproduced exactly from one run to the next.
+ * </p>
+ * <p>
+ * Robots should be added before the threads controlling them start moving
+ * them, and each Robot should be removed by the thread controlling it once it
+ * is done, since the other Robots wait for it until then. Combined with
+ * {@link Robot#enableTurboMode(int)}, the Robots run as fast as possible.
+ * </p>
+ * <p>
+ * Example of how to use:
+ * </p>
+ * <pre>
+ * {@code
+ * LockstepClock clock = new LockstepClock();
+ * clock.add(vic);
+ * clock.add(june);
+ * new Thread(() -> { vicsPart(); clock.remove(vic); }).start();
+ * new Thread(() -> { junesPart(); clock.remove(june); }).start();
+ * }
+ * </pre>
+ */
+public final class LockstepClock {
+
+    private volatile long tick = 0L;
+
+    private final Phaser phaser = new Phaser() {
+        @Override
+        protected boolean onAdvance(int phase, int registeredParties) {
+            tick++;
+            return false; // never terminate, even when all Robots have been removed
+        }
+    };
+
+    /**
+     * Adds a Robot to this clock.
+     *
+     * @param robot the Robot
+     * @throws IllegalStateException if the Robot is already in lockstep with a clock
+     */
+    public void add(Robot robot) {
+        robot.setLockstepClock(this);
+        phaser.register();
+    }
+
+    /**
+     * Removes a Robot from this clock. This method should be invoked from the
+     * thread that controls the Robot.
+     *
+     * @param robot the Robot
+     * @throws IllegalStateException if the Robot is not in lockstep with this clock
+     */
+    public void remove(Robot robot) {
+        if (robot.getLockstepClock() != this) {
+            throw new IllegalStateException("The robot is not in lockstep with this clock.");
+        }
+        robot.setLockstepClock(null);
+        phaser.arriveAndDeregister();
+    }
+
+    /**
+     * Returns the global tick number, i.e., the number of ticks that all the
+     * Robots added to this clock have completed.
+     *
+     * @return the global tick number
+     */
+    public long getTick() {
+        return tick;
+    }
+
+    /**
+     * Blocks until all the Robots added to this clock have finished the current tick.
+     *
+     * @throws InterruptedException if interrupted while waiting
+     */
+    void awaitStep() throws InterruptedException {
+        phaser.awaitAdvanceInterruptibly(phaser.arrive());
+    }
+}
@@ -0,0 +1,87 @@
+package org.jointheleague.graphical.robot;
+
+import org.jointheleague.graphical.robot.curves.Drawable;
+import org.jointheleague.graphical.robot.curves.Line;
+
+import java.awt.*;
+import java.util.Objects;
+
+/**
+ * The ink left by a Robot that moves in small steps with
+ * {@link Robot#microMove(int)}. Consecutive steps in the same heading and
+ * direction, with the same pen, extend the trail instead of each adding a
+ * line of their own, so that the number of drawables grows with the number
+ * of turns rather than with the number of ticks. The trail is drawn as the
+ * Robot's current drawable until it is sealed, i.e., converted to a
+ * {@link Line} and committed.
+ */
+final class MicroTrail implements Drawable {
+
+    private final float startX;
+    private final float startY;
+    private final double angle;
+    private final int sgn;
+    private final int lineSize;
+    private final Color color;
+    private float endX;
+    private float endY;
+    private long stamp; // the tick of the last step
+
+    /**
+     * @param startX   the x-coordinate where the trail starts
+     * @param startY   the y-coordinate where the trail starts
+     * @param angle    the heading of the Robot, in degrees
+     * @param sgn      1 if the Robot moves forwards, -1 if it moves backwards
+     * @param lineSize the width of the pen
+     * @param color    the color of the pen
+     */
+    MicroTrail(float startX, float startY, double angle, int sgn, int lineSize, Color color) {
+        this.startX = startX;
+        this.startY = startY;
+        this.angle = angle;
+        this.sgn = sgn;
+        this.lineSize = lineSize;
+        this.color = color;
+        this.endX = startX;
+        this.endY = startY;
+    }
+
+    /**
+     * @return true if a step from the given position, heading and direction and with
+     * the given pen continues this trail
+     */
+    synchronized boolean continues(float x, float y, double angle, int sgn, int lineSize, Color color) {
+        return x == endX && y == endY && angle == this.angle && sgn == this.sgn
+                && lineSize == this.lineSize && Objects.equals(color, this.color);
+    }
+
+    /**
+     * @param x     the x-coordinate where the step ends
+     * @param y     the y-coordinate where the step ends
+     * @param stamp the tick of the step
+     */
+    synchronized void extendTo(float x, float y, long stamp) {
+        endX = x;
+        endY = y;
+        this.stamp = stamp;
+    }
+
+    /**
+     * @return the tick of the last step, with which the trail is committed
+     */
+    synchronized long getStamp() {
+        return stamp;
+    }
+
+    /**
+     * @return the trail as a line that does not change
+     */
+    synchronized Line toLine() {
+        return new Line(startX, startY, new float[]{endX, endY}, lineSize, color);
+    }
+
+    @Override
+    public void draw(Graphics2D g2) {
+        toLine().draw(g2);
+    }
+}
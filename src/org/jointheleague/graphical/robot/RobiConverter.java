@@ -0,0 +1,53 @@
+package org.jointheleague.graphical.robot;
+
+import javax.imageio.ImageIO;
+import java.awt.image.BufferedImage;
+import java.io.*;
+
+/**
+ * Converts images in the original robi format, or in any format that ImageIO
+ * reads, e.g., PNG, to version 2 of the robi format, which is much smaller
+ * and faster to load. See {@link RobotImage} for the formats.
+ * <p>
+ * Usage: <code>java org.jointheleague.graphical.robot.RobiConverter
+ * input output.robi</code>, where the input is a .robi file or an image file.
+ * </p>
+ */
+public class RobiConverter {
+
+    public static void main(String[] args) {
+        if (args.length != 2) {
+            System.err.println("Usage: java " + RobiConverter.class.getName() + " input output.robi");
+            System.exit(2);
+        }
+        try {
+            convert(new File(args[0]), new File(args[1]));
+        } catch (IOException e) {
+            System.err.println("The image could not be converted: " + e.getMessage());
+            System.exit(1);
+        }
+    }
+
+    /**
+     * Converts an image to version 2 of the robi format. An input that is a robi
+     * file, in either version, is recognized by its ".robi" extension.
+     *
+     * @param input  the robi file or image file to convert
+     * @param output the robi file to write, which may be the input
+     * @throws IOException if the input can not be read or the output can not be written
+     */
+    public static void convert(File input, File output) throws IOException {
+        final BufferedImage image;
+        if (input.getName().endsWith(".robi")) {
+            try (InputStream in = new FileInputStream(input)) {
+                image = RobotImage.readRobi(in, input.getName());
+            }
+        } else {
+            image = ImageIO.read(input);
+            if (image == null) throw new IOException(input + " is not in a known image format.");
+        }
+        try (OutputStream out = new FileOutputStream(output)) {
+            RobotImage.writeRobi(image, out);
+        }
+    }
+}
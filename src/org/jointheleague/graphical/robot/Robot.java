@@ -2,21 +2,15 @@ package org.jointheleague.graphical.robot;
 
 import org.jointheleague.graphical.robot.curves.*;
 
-import javax.imageio.ImageIO;
 import javax.swing.*;
 import java.awt.*;
-import java.awt.event.ActionListener;
 import java.awt.event.KeyListener;
 import java.awt.geom.AffineTransform;
 import java.awt.geom.PathIterator;
 import java.awt.image.BufferedImage;
-import java.io.IOException;
-import java.net.URL;
-import java.util.ArrayList;
-import java.util.List;
 import java.util.Random;
-import java.util.concurrent.ArrayBlockingQueue;
-import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.Future;
+import java.util.concurrent.Semaphore;
 import java.util.concurrent.ThreadLocalRandom;
 
 /**
@@ -31,7 +25,8 @@ import java.util.concurrent.ThreadLocalRandom;
  * {@link #microMove(int)}, and {@link #microTurn(int)} methods. These methods
  * should be called from the same thread, which is typically the main thread,
  * but different Robots may be controlled from different threads, thereby
- * allowing the Robots to move simultaneously.
+ * allowing the Robots to move simultaneously. {@link RobotLauncher} runs the
+ * programs controlling many Robots on lightweight threads where available.
  * </p>
  * <p>
  * A Robot also has state, e.g., visible or hidden, pen size, pen up or down,
@@ -47,26 +42,40 @@ public class Robot implements RobotInterface {
     private static final int MINI_IMAGE_SIZE = 25;
     private static final int MIN_SPEED = 1;
     private static final int MAX_SPEED = 100;
+    private static final int MAX_PEN_WIDTH = 10;
 
     // Robot state start
     private int speed;
     private boolean penDown;
     private int penWidth;
     private Color penColor;
-    private Pos pos;
+    private float x;
+    private float y;
     private double angle;
     private boolean isVisible;
     private boolean isSparkling;
-    private ArrayList<Drawable> drawables;
+    private volatile DrawableStore drawables;
+    private DrawingJournal journal; // records the drawables, or null
     private Drawable currentDrawable;
+    private MicroTrail trail; // the ink of the last microMoves, not yet committed
     private boolean isMini;
-    private Image maxiImage;
-    private Image miniImage;
-    private Image image;
+    private int imageVersion; // the number of times the image was changed
+    private Sprite maxiSprite;
+    private Sprite miniSprite;
+    private Sprite sprite;
     // Robot state end
 
     private RobotWindow window;
-    private BlockingQueue<TimeQuantum> leakyBucket = new ArrayBlockingQueue<>(1);
+    private FrameScheduler scheduler;
+    private volatile LockstepClock lockstepClock;
+    private volatile LockstepClock inkClock; // the last clock this Robot was in lockstep with
+    private final Rectangle damage = new Rectangle(); // area changed since the last tick; guarded by this
+    // the ticks released by the FrameScheduler and not yet taken, one unless released in turns; a semaphore
+    // wakes a waiting Robot with a single handoff, where a queue would also lock and signal a condition
+    private final Semaphore leakyBucket = new Semaphore(0);
+    private volatile int ticksPerFrame = 1; // 0 if this Robot does not wait for frames at all
+    private int ticksAhead; // the ticks taken since this Robot last waited for a frame
+    private volatile RobotRecorder recorder; // records the calls made to this Robot, or null
     private DynamicPath currentPath;
 
     public Robot() {
@@ -91,7 +100,7 @@ public class Robot implements RobotInterface {
      *                 specifies the Robot's image.
      */
     public Robot(String fileName) {
-        this(RobotImage.loadRobi(fileName));
+        this(RobotImage.getSharedRobi(fileName));
     }
 
     /**
@@ -114,7 +123,7 @@ public class Robot implements RobotInterface {
      * @param yPos     the initial y-coordinate of the robot
      */
     public Robot(String fileName, int xPos, int yPos) {
-        this(RobotImage.loadRobi(fileName), xPos, yPos);
+        this(RobotImage.getSharedRobi(fileName), xPos, yPos);
     }
 
     /**
@@ -127,7 +136,8 @@ public class Robot implements RobotInterface {
     public Robot(BufferedImage inputImage, int xPos, int yPos) {
         angle = 0;
         speed = 1;
-        this.pos = new Pos(xPos, yPos);
+        this.x = xPos;
+        this.y = yPos;
         penWidth = 1;
         penColor = Color.BLACK;
 
@@ -135,13 +145,14 @@ public class Robot implements RobotInterface {
         penDown = false;
         isSparkling = false;
 
-        maxiImage = inputImage.getScaledInstance(MAXI_IMAGE_SIZE, MAXI_IMAGE_SIZE, Image.SCALE_SMOOTH);
-        miniImage = inputImage.getScaledInstance(MINI_IMAGE_SIZE, MINI_IMAGE_SIZE, Image.SCALE_SMOOTH);
-        image = maxiImage;
+        maxiSprite = Sprite.forImage(inputImage, MAXI_IMAGE_SIZE);
+        miniSprite = Sprite.forImage(inputImage, MINI_IMAGE_SIZE);
+        sprite = maxiSprite;
         isMini = false;
 
-        drawables = new ArrayList<>();
+        drawables = new DrawableStore();
         window = RobotWindow.getInstance();
+        scheduler = window.getScheduler();
         window.addRobot(this);
     }
 
@@ -155,14 +166,49 @@ public class Robot implements RobotInterface {
     }
 
     /**
-     * Sets the window's background image
+     * Sets the window's background image once it is loaded
      *
-     * @param imageLocation the new window background image location.
+     * @param imageLocation the URL, classpath resource or file path of the new
+     *                      window background image. See {@link AssetManager}.
      */
     public static void setWindowImage(final String imageLocation) {
         SwingUtilities.invokeLater(() -> RobotWindow.getInstance().setBackgroundImage(imageLocation));
     }
 
+    /**
+     * Sets the angular resolution at which rotated robot images are pre-rendered and
+     * cached. A Robot whose angle is a multiple of the resolution is drawn from the
+     * cache, which is much faster than rotating its image on every frame.
+     *
+     * @param degrees the angle in degrees between two cached rotations. It must
+     *                divide 360. The default is 1.
+     */
+    public static void setSpriteResolution(int degrees) {
+        Sprite.setAngularResolution(degrees);
+    }
+
+    /**
+     * Switches to turbo mode, in which Robots no longer move at the pace of the
+     * window's timer but advance as fast as their threads can run. The window is
+     * repainted at the given frame rate, or not at all until turbo mode is
+     * switched off if the frame rate is 0. The drawings produced are identical to
+     * the ones produced in the normal mode. Robots controlled from the keyboard are
+     * not sped up.
+     *
+     * @param framesPerSecond the number of times per second the window is repainted
+     */
+    public static void enableTurboMode(int framesPerSecond) {
+        RobotWindow.getInstance().getScheduler().setTurbo(true, framesPerSecond);
+    }
+
+    /**
+     * Switches back to the normal mode, in which Robots move at the pace of the
+     * window's timer.
+     */
+    public static void disableTurboMode() {
+        RobotWindow.getInstance().getScheduler().setTurbo(false, 0);
+    }
+
     /**
      * Sets the window size
      *
@@ -190,44 +236,74 @@ public class Robot implements RobotInterface {
         Robot.setWindowColor(new Color(r, g, b));
     }
 
+    /**
+     * Gets the sprite of this Robot if all that it draws is its sprite, so that
+     * it may be drawn by a {@link SpriteLayer}.
+     *
+     * @param pose   an array in which the x- and y-coordinates and the angle of the
+     *               Robot are stored, if it draws nothing but its sprite
+     * @param offset the index in <code>pose</code> at which they are stored
+     * @return the sprite, or null if the Robot is hidden or draws anything besides its
+     * sprite, in which case it must be drawn by {@link #draw(Graphics2D)}
+     */
+    synchronized Sprite getBareSprite(double[] pose, int offset) {
+        if (!isVisible || penDown || isSparkling) return null;
+        pose[offset] = x;
+        pose[offset + 1] = y;
+        pose[offset + 2] = angle;
+        return sprite;
+    }
+
     /**
      * Draws the Robot
      *
      * @param g2 The graphics object used to draw the Robot.
      */
     void draw(Graphics2D g2) {
-        for (Drawable drawable : getDrawables()) {
-            drawable.draw(g2);
-        }
-        // draws under robot
-        if (isPenDown()) {
-            Drawable drawable = getCurrentDrawable();
-            if (drawable != null) drawable.draw(g2);
+        final float x;
+        final float y;
+        final double a;
+        final boolean pen;
+        final boolean visible;
+        final boolean mini;
+        final boolean sparkling;
+        final Drawable drawable;
+        final Sprite sprite;
+        synchronized (this) {
+            x = this.x;
+            y = this.y;
+            a = angle;
+            pen = penDown;
+            visible = isVisible;
+            mini = isMini;
+            sparkling = isSparkling;
+            drawable = penDown ? currentDrawable : null;
+            sprite = this.sprite;
         }
+        // committed drawables are drawn by the window's ink layer; draws under robot
+        if (drawable != null) drawable.draw(g2);
+        if (!visible) return;
+        sprite.draw(g2, x, y, a);
+        if (!pen && !sparkling) return; // nothing is drawn over the robot
 
         // first cache the standard coordinate system
         AffineTransform cached = g2.getTransform();
         // align the coordinate system with the center of the robot:
-        g2.translate(pos.x, pos.y);
-        g2.rotate(Math.toRadians(getAngle()));
+        g2.translate(x, y);
+        g2.rotate(Math.toRadians(a));
 
-        if (isVisible()) {
-            int offset = -(isMini() ? MINI_IMAGE_SIZE : MAXI_IMAGE_SIZE) / 2;
-            g2.drawImage(image, offset, offset, null);
-        }
-
-        if (penDown && isVisible) // draws over robot
+        if (pen) // draws over robot
         {
             g2.setColor(Color.RED);
-            if (isMini()) {
+            if (mini) {
                 g2.fillOval(-2, -2, 4, 4);
             } else {
                 g2.fillOval(-4, -4, 8, 8);
             }
         }
 
-        if (isVisible() && isSparkling()) {
-            if (isMini()) {
+        if (sparkling) {
+            if (mini) {
                 double s = (double) MINI_IMAGE_SIZE / MAXI_IMAGE_SIZE;
                 g2.scale(s, s);
             }
@@ -240,33 +316,92 @@ public class Robot implements RobotInterface {
         g2.setTransform(cached); // restore the standard coordinate system
     }
 
-    private synchronized boolean isMini() {
+    /**
+     * @return the drawables that this Robot has committed so far
+     */
+    DrawableStore getCommittedDrawables() {
+        return drawables;
+    }
+
+    /**
+     * @return the drawables that this Robot has committed so far, whose journal, if any, is
+     * not cleared until {@link DrawableStore#endRead()} is invoked
+     */
+    synchronized DrawableStore beginReadingCommittedDrawables() {
+        final DrawableStore store = drawables;
+        store.beginRead();
+        return store;
+    }
+
+    synchronized boolean isMini() {
         return isMini;
     }
 
     @Override
-    public synchronized void changeRobot(BufferedImage im) {
-        Image imMax = im.getScaledInstance(MAXI_IMAGE_SIZE, MAXI_IMAGE_SIZE, Image.SCALE_SMOOTH);
-        Image imMin = im.getScaledInstance(MINI_IMAGE_SIZE, MINI_IMAGE_SIZE, Image.SCALE_SMOOTH);
+    public void changeRobot(BufferedImage im) {
+        final int version;
         synchronized (this) {
-            maxiImage = imMax;
-            miniImage = imMin;
-            image = isMini ? miniImage : maxiImage;
+            version = ++imageVersion;
         }
+        swapImage(im, version);
     }
 
+    /**
+     * Changes the image of the Robot once it is loaded. This method returns at
+     * once; the Robot keeps its current image while the new one is loaded, and
+     * keeps it if the new one can not be loaded.
+     *
+     * @param urlName the URL, classpath resource or file path of the image. See
+     *                {@link AssetManager}.
+     */
     @Override
-    public synchronized void changeRobot(String urlName) {
-        BufferedImage newImage;
-        try {
-            URL url = new URL(urlName);
-            newImage = ImageIO.read(url);
-        } catch (IOException e) {
-            System.err.println("There was an error changing robot's image. Make sure the URL addresses an image.");
-            e.printStackTrace();
-            newImage = (BufferedImage) image;
+    public void changeRobot(String urlName) {
+        changeRobotAsync(urlName);
+    }
+
+    /**
+     * Changes the image of the Robot once it is loaded, like {@link #changeRobot(String)}.
+     * If the image of the Robot is changed again before this image is loaded,
+     * this image is not used.
+     *
+     * @param location the URL, classpath resource or file path of the image. See
+     *                 {@link AssetManager}.
+     * @return a future that completes with the image once the Robot has been
+     * given it, with <code>null</code> if the image was not used because the image
+     * of the Robot was changed again meanwhile, or exceptionally if the image can
+     * not be loaded
+     */
+    public Future<BufferedImage> changeRobotAsync(String location) {
+        final int version;
+        synchronized (this) {
+            version = ++imageVersion;
+        }
+        return AssetManager.load(location).thenApply(image -> swapImage(image, version) ? image : null)
+                .whenComplete((image, failure) -> {
+                    if (failure != null) {
+                        System.err.println("There was an error changing robot's image. Make sure the URL addresses an image.");
+                        (failure.getCause() != null ? failure.getCause() : failure).printStackTrace();
+                    }
+                });
+    }
+
+    /**
+     * Gives this Robot the image requested by the given change of image, unless
+     * its image has been changed again since.
+     *
+     * @return true if the Robot was given the image
+     */
+    private boolean swapImage(BufferedImage im, int version) {
+        Sprite spMax = Sprite.forImage(im, MAXI_IMAGE_SIZE);
+        Sprite spMin = Sprite.forImage(im, MINI_IMAGE_SIZE);
+        synchronized (this) {
+            if (version != imageVersion) return false;
+            maxiSprite = spMax;
+            miniSprite = spMin;
+            addDamage();
+            sprite = isMini ? miniSprite : maxiSprite;
         }
-        changeRobot(newImage);
+        return true;
     }
 
     @Override
@@ -276,7 +411,7 @@ public class Robot implements RobotInterface {
 
     @Override
     public synchronized void setPenWidth(int size) {
-        penWidth = Math.min(Math.max(1, size), 10);
+        penWidth = Math.min(Math.max(1, size), MAX_PEN_WIDTH);
     }
 
     @Override
@@ -308,20 +443,58 @@ public class Robot implements RobotInterface {
     }
 
     private synchronized void addDrawable(final Drawable segment) {
-        drawables.add(segment);
+        final LockstepClock clock = lockstepClock;
+        drawables.add(segment, clock == null ? 0L : clock.getTick());
     }
 
-    @Override
-    public synchronized void clearDrawables() {
-        drawables.clear();
+    private synchronized void addDrawable(final Drawable segment, long stamp) {
+        drawables.add(segment, stamp);
     }
 
-    private synchronized List<Drawable> getDrawables() {
-        return new ArrayList<>(drawables);
+    @Override
+    public void clearDrawables() {
+        boolean interrupted = false;
+        while (true) {
+            final DrawingJournal j;
+            synchronized (this) {
+                j = journal;
+                if (j == null || j.clear()) {
+                    if (trail != null && currentDrawable == trail) currentDrawable = null;
+                    trail = null;
+                    drawables = j == null ? new DrawableStore() : new DrawableStore(j);
+                    break;
+                }
+            }
+            // the ink is being exported from the journal; wait without blocking the window
+            try {
+                j.awaitReaders();
+            } catch (InterruptedException e) {
+                interrupted = true;
+            }
+        }
+        if (interrupted) Thread.currentThread().interrupt();
+        window.invalidateInk();
     }
 
-    private synchronized Drawable getCurrentDrawable() {
-        return currentDrawable;
+    /**
+     * Records the drawables that this Robot commits in a journal that is kept
+     * in a file instead of on the heap, which lets a drawing go on for days.
+     * The drawables that this Robot has committed so far are replaced by those
+     * already recorded in the journal, so that a drawing is resumed by
+     * reopening its journal and giving it to a Robot. Clearing the drawables
+     * also clears the journal, once the exports of the ink that read it, see
+     * {@link RobotWindow#writeSvg(java.io.File)}, are complete.
+     *
+     * @param journal the journal, or null to stop recording, in which case the
+     *                drawables committed so far are discarded
+     */
+    public void setJournal(DrawingJournal journal) {
+        sealTrail();
+        synchronized (this) {
+            this.journal = journal;
+            drawables = journal == null ? new DrawableStore() : new DrawableStore(journal);
+        }
+        window.invalidateInk();
     }
 
     private synchronized void setCurrentDrawable(Drawable drawable) {
@@ -330,19 +503,23 @@ public class Robot implements RobotInterface {
 
     @Override
     public synchronized void miniaturize() {
-        image = miniImage;
+        addDamage();
+        sprite = miniSprite;
         isMini = true;
     }
 
     @Override
     public synchronized void expand() {
-        image = maxiImage;
+        addDamage();
+        sprite = maxiSprite;
         isMini = false;
     }
 
     @Override
     public synchronized void setPos(float x, float y) {
-        pos = new Robot.Pos(x, y);
+        addDamage();
+        this.x = x;
+        this.y = y;
     }
 
     @Override
@@ -352,6 +529,7 @@ public class Robot implements RobotInterface {
 
     @Override
     public synchronized void setAngle(double a) {
+        addDamage();
         angle = (a + 180.0) % 360.0 - 180.0;
         if (angle < -180) angle += 360;
     }
@@ -360,31 +538,31 @@ public class Robot implements RobotInterface {
         setAngle(angle + delta);
     }
 
-    private synchronized boolean isSparkling() {
-        return isSparkling;
-    }
-
     @Override
     public synchronized void sparkle() {
+        addDamage();
         isSparkling = true;
     }
 
     @Override
     public synchronized void unSparkle() {
+        addDamage();
         isSparkling = false;
     }
 
-    private synchronized boolean isVisible() {
+    synchronized boolean isVisible() {
         return isVisible;
     }
 
     @Override
     public synchronized void hide() {
+        addDamage();
         isVisible = false;
     }
 
     @Override
     public synchronized void show() {
+        addDamage();
         isVisible = true;
     }
 
@@ -403,31 +581,56 @@ public class Robot implements RobotInterface {
         if (sgn == 0) {
             throw new IllegalArgumentException("The argument sgn must be non-zero.");
         }
-        final float distance = (sgn < 0 ? -1 : 1) * speed;
-        final double rAngle = Math.toRadians(getAngle());
+        final RobotRecorder r = recorder;
+        if (r != null) r.recordMicroMove(sgn);
+        final int direction = sgn < 0 ? -1 : 1;
+        final float distance = direction * speed;
+        final double angle = getAngle();
+        final double rAngle = Math.toRadians(angle);
         final float startX = getX();
         final float startY = getY();
         final float endX = (float) (getX() + distance * Math.sin(rAngle));
         final float endY = (float) (getY() - distance * Math.cos(rAngle));
-        leakyBucket.take();
-        pos = new Pos(endX, endY);
+        awaitTick(true);
+        setPos(endX, endY);
         if (isPenDown()) {
-            final float[] ctrlPoints = new float[]{endX, endY};
             synchronized (this) {
-                addDrawable(new Line(startX, startY, ctrlPoints, getPenWidth(), getPenColor()));
+                if (trail == null || !trail.continues(startX, startY, angle, direction, penWidth, penColor)) {
+                    sealTrail();
+                    trail = new MicroTrail(startX, startY, angle, direction, penWidth, penColor);
+                    setCurrentDrawable(trail);
+                }
+                final LockstepClock clock = lockstepClock;
+                trail.extendTo(endX, endY, clock == null ? 0L : clock.getTick());
             }
         }
     }
 
+    /**
+     * Commits the ink of the last microMoves, if any, so that the next ink is
+     * drawn after it. The trail is sealed by the Robot's own thread, by the
+     * first call other than a microMove or microTurn, or when its program
+     * ends, and is stamped with the tick of its last step, so that the ink
+     * does not depend on how the Robot's thread is scheduled.
+     */
+    synchronized void sealTrail() {
+        if (trail != null) {
+            if (currentDrawable == trail) currentDrawable = null;
+            addDrawable(trail.toLine(), trail.getStamp());
+            trail = null;
+        }
+    }
+
     @Override
     public void turn(double degrees) {
+        sealTrail();
         double degreesTurned = 0;
         int sgn = degrees < 0 ? -1 : 1;
 
         double angle0 = getAngle();
         try {
             while (sgn * (degreesTurned - degrees) < 0) {
-                leakyBucket.take(); // will block until a TimeQuatum.TICK becomes available
+                awaitTick(); // will block until the next tick, unless in turbo mode
                 degreesTurned += sgn * speed;
                 if (sgn * (degreesTurned - degrees) > 0) {
                     degreesTurned = degrees;
@@ -449,13 +652,16 @@ public class Robot implements RobotInterface {
         if (sgn == 0) {
             throw new IllegalArgumentException("sgn must be non-zero.");
         }
-        leakyBucket.take();
+        final RobotRecorder r = recorder;
+        if (r != null) r.recordMicroTurn(sgn);
+        awaitTick(true);
         incrementAngle(sgn * speed);
     }
 
     void doNothing() {
+        sealTrail();
         try {
-            leakyBucket.take();
+            awaitTick(true);
         } catch (InterruptedException e) {
             e.printStackTrace();
         }
@@ -463,10 +669,11 @@ public class Robot implements RobotInterface {
 
     @Override
     public void sleep(int millis) {
+        sealTrail();
         try {
             int numTicks = millis / TICK_LENGTH;
             for (int i = 0; i < numTicks; i++) {
-                leakyBucket.take();
+                awaitTick();
             }
         } catch (InterruptedException e) {
             e.printStackTrace();
@@ -476,7 +683,7 @@ public class Robot implements RobotInterface {
     @Override
     @Deprecated
     public synchronized void moveTo(float x, float y) {
-        pos = new Pos(x, y);
+        setPos(x, y);
     }
 
     @Override
@@ -518,22 +725,36 @@ public class Robot implements RobotInterface {
     }
 
     private void segmentTo(Segment segment, boolean forwards) {
+        sealTrail();
         final double directionAdjustment = forwards ? 0.0 : 180.0;
         double startAngle = segment.getStartAngle();
         if (!Double.isNaN(startAngle)) turnTo(Math.toDegrees(startAngle) + directionAdjustment);
 
-        final float deltaT = speed / segment.getSize();
+        final int step = speed;
+        final int inkRadius = getPenWidth() / 2 + 2;
+        // reused on every tick, so that tracing the segment does not allocate: the position and
+        // derivative at the current time, followed by those at the time of the previous tick
+        final float[] point = new float[8];
+        final SegmentTrace trace = segment instanceof Drawable ? new SegmentTrace(segment) : null;
+        float distance = 0.0F;
         float t = 0.0F;
+        segment.evaluate(t, point);
         try {
             while (t < 1.0F) {
-                leakyBucket.take();
-                t += deltaT;
-                Segment subSegment = segment.subSegment(t);
-                pos = subSegment.getPos(1F);
-                double endAngle = subSegment.getEndAngle();
-                if (!Double.isNaN(endAngle)) setAngle(Math.toDegrees(endAngle + directionAdjustment));
-                if (isPenDown() && (subSegment instanceof Drawable)) {
-                    setCurrentDrawable((Drawable) subSegment);
+                awaitTick();
+                distance += step;
+                final float previousT = t;
+                System.arraycopy(point, 0, point, 4, 4);
+                t = segment.getTime(distance);
+                segment.evaluate(t, point);
+                setPos(point[0], point[1]);
+                if (point[2] != 0F || point[3] != 0F) {
+                    setAngle(Math.toDegrees(Math.atan2(point[2], -point[3])) + directionAdjustment);
+                }
+                if (trace != null && isPenDown()) {
+                    addDamage(point, Math.min(t, 1F) - previousT, inkRadius);
+                    trace.setTime(t);
+                    setCurrentDrawable(trace);
                 }
             }
         } catch (InterruptedException e) {
@@ -541,7 +762,7 @@ public class Robot implements RobotInterface {
         }
         synchronized (this) {
             if (currentDrawable != null) {
-                addDrawable(currentDrawable);
+                addDrawable(currentDrawable == trace ? trace.toDrawable() : currentDrawable);
                 setCurrentDrawable(null);
             }
         }
@@ -549,12 +770,21 @@ public class Robot implements RobotInterface {
 
     @Override
     public void followPath(PathIterator pathIterator, boolean fill) {
+        sealTrail();
         DynamicPath dynamicPath = new DynamicPath(pathIterator, getPenWidth(), getPenColor(), this, fill);
         if (isPenDown()) currentDrawable = dynamicPath;
+        final int inkRadius = getPenWidth() / 2 + 2;
+        final float[] step = new float[8]; // reused on every tick, as in segmentTo
         try {
             while (!dynamicPath.isComplete()) {
-                leakyBucket.take();
+                awaitTick();
                 dynamicPath.incrementTime(speed);
+                if (currentDrawable == null) continue;
+                if (fill) {
+                    addDamage(dynamicPath.getBounds());
+                } else {
+                    addDamage(step, dynamicPath.getLastStep(step), inkRadius);
+                }
             }
         } catch (InterruptedException ignore) {
         }
@@ -580,28 +810,35 @@ public class Robot implements RobotInterface {
 
     @Override
     public synchronized float getX() {
-        return pos.x;
+        return x;
     }
 
     @Override
     public synchronized float getY() {
-        return pos.y;
+        return y;
     }
 
-    private synchronized boolean isPenDown() {
+    synchronized boolean isPenDown() {
         return penDown;
     }
 
     @Override
     public synchronized void penUp() {
+        sealTrail();
+        addDamage();
         penDown = false;
     }
 
     @Override
     public synchronized void penDown() {
+        addDamage();
         penDown = true;
     }
 
+    synchronized int getSpeed() {
+        return speed;
+    }
+
     @Override
     public synchronized void setSpeed(int speed) {
         this.speed = Math.min(Math.max(MIN_SPEED, speed), MAX_SPEED);
@@ -626,15 +863,183 @@ public class Robot implements RobotInterface {
         });
     }
 
-    private enum TimeQuantum {
-        TICK
+    /**
+     * Blocks until this Robot may advance one tick. In turbo mode, returns immediately
+     * unless the Robot is in lockstep with other Robots.
+     *
+     * @throws InterruptedException if the thread is interrupted while waiting
+     */
+    private void awaitTick() throws InterruptedException {
+        awaitTick(false);
+    }
+
+    /**
+     * Blocks until this Robot may advance one tick.
+     *
+     * @param interactive if true, wait for the window's timer also in turbo mode, so that
+     *                    Robots controlled from the keyboard are not sped up.
+     * @throws InterruptedException if the thread is interrupted while waiting
+     */
+    private void awaitTick(boolean interactive) throws InterruptedException {
+        final int n = ticksPerFrame;
+        if (n == 0 || n > 1 && ++ticksAhead < n) { // ahead of the frames, see setTicksPerFrame
+            if (Thread.interrupted()) throw new InterruptedException();
+        } else if (interactive || !scheduler.isTurbo()) {
+            ticksAhead = 0;
+            leakyBucket.acquire();
+        } else {
+            ticksAhead = 0;
+            if (Thread.interrupted()) throw new InterruptedException();
+        }
+        final LockstepClock clock = lockstepClock;
+        if (clock != null) clock.awaitStep();
+    }
+
+    /**
+     * Lets this Robot advance several ticks per frame, e.g., to replay a recording
+     * faster than it was recorded. Unlike turbo mode, this applies to one Robot only,
+     * and also to the moves made from the keyboard.
+     *
+     * @param n the number of ticks per frame, or 0 to never wait for a frame
+     */
+    void setTicksPerFrame(int n) {
+        if (n < 0) throw new IllegalArgumentException("The number of ticks per frame must not be negative.");
+        ticksPerFrame = n;
+    }
+
+    /**
+     * Starts or stops recording the calls made to this Robot from the keyboard. The
+     * other calls are recorded by the recorder itself, which wraps this Robot.
+     *
+     * @param recorder the recorder, or null to stop recording
+     */
+    synchronized void setRecorder(RobotRecorder recorder) {
+        if (recorder != null && this.recorder != null) {
+            throw new IllegalStateException("The robot is already being recorded.");
+        }
+        this.recorder = recorder;
+    }
+
+    LockstepClock getLockstepClock() {
+        return lockstepClock;
+    }
+
+    synchronized void setLockstepClock(LockstepClock clock) {
+        if (clock != null && lockstepClock != null) {
+            throw new IllegalStateException("The robot is already in lockstep with a clock.");
+        }
+        lockstepClock = clock;
+        if (clock != null) inkClock = clock;
     }
 
-    ActionListener getTickerListener() {
-        return e -> {
-            leakyBucket.offer(TimeQuantum.TICK);
-            window.repaint();
-        };
+    /**
+     * @return the last clock that this Robot has been in lockstep with, or null if never in lockstep.
+     * The clock determines when the drawables committed in lockstep are put in the window's ink.
+     */
+    LockstepClock getInkClock() {
+        return inkClock;
+    }
+
+    /**
+     * Releases ticks to this Robot. Invoked by the {@link FrameScheduler} once per frame.
+     * The ticks that this Robot has not taken yet count towards the ticks released, so
+     * that a Robot that falls behind the frames does not build up a backlog.
+     *
+     * @param ticks the number of ticks that this Robot may take without waiting, usually
+     *              one, or 0 to release none on this frame
+     * @return the area damaged by this Robot since the previous tick, or null if nothing changed
+     */
+    Rectangle tick(int ticks) {
+        Rectangle area = takeDamage();
+        final int missing = ticks - leakyBucket.availablePermits();
+        if (missing > 0) leakyBucket.release(missing); // only the EDT releases
+        return area;
+    }
+
+    /**
+     * @return the bounds of the area in which this Robot's sprite and the ink
+     * that it is currently laying down are painted. The bounds are independent
+     * of the Robot's angle.
+     */
+    private synchronized Rectangle getPaintBounds() {
+        final int radius = getPaintRadius();
+        return new Rectangle((int) Math.floor(x) - radius, (int) Math.floor(y) - radius,
+                2 * radius + 1, 2 * radius + 1);
+    }
+
+    private synchronized int getPaintRadius() {
+        int radius = MAX_PEN_WIDTH / 2 + 2;
+        if (isVisible) {
+            int size = isMini ? MINI_IMAGE_SIZE : MAXI_IMAGE_SIZE;
+            radius = Math.max(radius, (int) Math.ceil(size * Math.sqrt(0.5)) + 2);
+        }
+        return radius;
+    }
+
+    /**
+     * Marks the area currently painted by this Robot as damaged. Must be called before
+     * any change that affects how the Robot is painted. Does not allocate, since it is
+     * called on every tick.
+     */
+    private synchronized void addDamage() {
+        final int radius = getPaintRadius();
+        addDamage((int) Math.floor(x) - radius, (int) Math.floor(y) - radius,
+                2 * radius + 1, 2 * radius + 1);
+    }
+
+    /**
+     * Marks the piece of a segment traced during one tick as damaged, since a curve may
+     * bulge out of the area painted by the Robot at either end of the piece. The piece is
+     * bounded by its control points, which are computed from the positions and derivatives
+     * at its ends as for a cubic B&eacute;zier curve, which also covers quads and lines.
+     * Does not allocate, since it is called on every tick.
+     *
+     * @param point    the position and derivative at the end of the piece, followed by
+     *                 those at its start, as computed by {@link Segment#evaluate(float, float[])}
+     * @param duration the time it took to trace the piece
+     * @param radius   the distance by which to grow the bounds of the piece
+     */
+    private synchronized void addDamage(float[] point, float duration, int radius) {
+        final float h = duration / 3F;
+        final float x1 = point[4] + h * point[6];
+        final float y1 = point[5] + h * point[7];
+        final float x2 = point[0] - h * point[2];
+        final float y2 = point[1] - h * point[3];
+        final float minX = Math.min(Math.min(point[4], x1), Math.min(x2, point[0]));
+        final float minY = Math.min(Math.min(point[5], y1), Math.min(y2, point[1]));
+        final float maxX = Math.max(Math.max(point[4], x1), Math.max(x2, point[0]));
+        final float maxY = Math.max(Math.max(point[5], y1), Math.max(y2, point[1]));
+        final int left = (int) Math.floor(minX) - radius;
+        final int top = (int) Math.floor(minY) - radius;
+        addDamage(left, top, (int) Math.ceil(maxX) + radius - left + 1,
+                (int) Math.ceil(maxY) + radius - top + 1);
+    }
+
+    private synchronized void addDamage(Rectangle area) {
+        addDamage(area.x, area.y, area.width, area.height);
+    }
+
+    private synchronized void addDamage(int x, int y, int width, int height) {
+        if (damage.isEmpty()) {
+            damage.setBounds(x, y, width, height);
+        } else {
+            damage.add(x, y);
+            damage.add(x + width, y + height);
+        }
+    }
+
+    /**
+     * Returns the area that needs to be repainted because of changes to this Robot since
+     * the last call of this method, and resets it.
+     *
+     * @return the area to repaint, or null if nothing changed.
+     */
+    private synchronized Rectangle takeDamage() {
+        if (damage.isEmpty() && !(isVisible && isSparkling)) return null;
+        Rectangle result = getPaintBounds();
+        if (!damage.isEmpty()) result.add(damage);
+        damage.setBounds(0, 0, 0, 0);
+        return result;
     }
 
     public static class Pos {
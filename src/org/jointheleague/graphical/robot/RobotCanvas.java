@@ -0,0 +1,36 @@
+package org.jointheleague.graphical.robot;
+
+import java.awt.*;
+
+/**
+ * The render target of the {@link RobotWindow}. The window keeps track of the
+ * Robots and knows how to paint them; a RobotCanvas decides where the result
+ * goes, i.e., to a {@link SwingCanvas} shown on the screen or to an
+ * {@link ImageCanvas} that renders offscreen and works when
+ * <code>java.awt.headless=true</code>.
+ */
+interface RobotCanvas {
+
+    /**
+     * Prepares the canvas. Invoked on the EDT when the first Robot is added to the window.
+     *
+     * @param width  the initial width
+     * @param height the initial height
+     */
+    void build(int width, int height);
+
+    /**
+     * Resizes the canvas. Invoked on the EDT only.
+     *
+     * @param width  the new width
+     * @param height the new height
+     */
+    void setSize(int width, int height);
+
+    /**
+     * Requests that an area of the canvas be repainted. May be invoked from any thread.
+     *
+     * @param area the area to repaint, or null to repaint the whole canvas
+     */
+    void repaint(Rectangle area);
+}
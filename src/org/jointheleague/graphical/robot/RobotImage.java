@@ -1,17 +1,55 @@
 package org.jointheleague.graphical.robot;
 
 import java.awt.image.BufferedImage;
+import java.awt.image.ColorModel;
+import java.awt.image.DataBufferInt;
+import java.awt.image.DirectColorModel;
+import java.awt.image.Raster;
+import java.awt.image.WritableRaster;
+import java.io.BufferedOutputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataOutputStream;
 import java.io.File;
 import java.io.IOException;
 import java.io.InputStream;
+import java.io.OutputStream;
+import java.nio.BufferUnderflowException;
 import java.nio.ByteBuffer;
 import java.nio.IntBuffer;
+import java.util.Arrays;
+import java.util.LinkedHashMap;
+import java.util.Map;
 
 import javax.imageio.ImageIO;
 import javax.swing.JOptionPane;
 
 /**
  * Utility class for loading images in robi format.
+ * <p>
+ * There are two versions of the format, which are told apart by the start
+ * of the file. A file in the original format holds a 100 by 100 image, as
+ * one record of 20 bytes per pixel: the x and y coordinates of the pixel
+ * followed by its red, green and blue components, each as a big-endian int.
+ * A file in version 2 holds an image of any size, with alpha, in a fraction
+ * of the space. It starts with the bytes "ROBI", the version, the encoding,
+ * and the width and height as unsigned shorts, followed by the pixels in
+ * row-major order as runs of equal pixels:
+ * </p>
+ * <ul>
+ * <li>In the palette encoding, for images with at most 256 colors, the
+ * number of colors minus one as a byte and the colors as ARGB ints come
+ * first, and each run is the run length minus one and the index of the
+ * color, as bytes.</li>
+ * <li>In the ARGB encoding, each run is the run length minus one as a byte
+ * followed by the color as an ARGB int.</li>
+ * </ul>
+ * <p>
+ * {@link RobiConverter} converts images to version 2. Either version is
+ * read in one go and decoded straight into the pixel array that backs the
+ * image. Decoded images are kept in a small cache, so that loading the
+ * same robi again, e.g., when many Robots are created with the default
+ * image, does not read the file again.
+ * </p>
  * 
  * @author David Dunn &amp; Erik Colban &copy; 2016
  *
@@ -20,59 +58,235 @@ public class RobotImage {
 	private static final int IMG_WIDTH = 100;
 	private static final int IMG_HEIGHT = 100;
 	private static final int PIXEL_LENGTH = 20; // in bytes
+	private static final int CACHE_SIZE = 16; // the number of robi images cached
+	// The color 0xdcdcdc is chosen to encode transparency
+	private static final int TRANSPARENT_RGB = 0xdcdcdc;
+	// version 2
+	private static final int MAGIC = 0x524F4249; // "ROBI"
+	private static final int VERSION = 2;
+	private static final int PALETTE_ENCODING = 0;
+	private static final int ARGB_ENCODING = 1;
+	private static final int HEADER_LENGTH = 10;
+	private static final int MAX_PALETTE_SIZE = 256;
+	private static final int MAX_RUN = 256;
+
+	// decoded images by name, least recently used first; guarded by itself
+	private static final Map<String, BufferedImage> CACHE = new LruCache();
 
 	public static BufferedImage loadDefaultRobi() {
 		return loadRobi("rob");
 	}
 
+	/**
+	 * Loads an image in robi format from the resources of this library.
+	 *
+	 * @param s the name of the image, without the ".robi" extension
+	 * @return a new image, which the caller may modify
+	 */
 	public static BufferedImage loadRobi(String s) {
-		s = String.format("res/%s.robi", s);
-		BufferedImage img = new BufferedImage(IMG_WIDTH, IMG_HEIGHT,
-				BufferedImage.TYPE_INT_ARGB);
+		return copy(getSharedRobi(s));
+	}
 
-		try (InputStream is = RobotImage.class.getResourceAsStream(s)) {
-			if (is == null) {
-				throw new IOException("File not found: " + s);
+	/**
+	 * Gets an image in robi format from the cache, loading it if necessary.
+	 * The image is shared, e.g., by all the Robots that use it, and must
+	 * therefore not be modified. If the image can not be loaded, the default
+	 * image is returned.
+	 *
+	 * @param s the name of the image, without the ".robi" extension
+	 * @return the shared image
+	 */
+	static BufferedImage getSharedRobi(String s) {
+		synchronized (CACHE) {
+			BufferedImage img = CACHE.get(s);
+			if (img != null) {
+				return img;
 			}
-			byte[] buf = new byte[PIXEL_LENGTH * 256];
-			IntBuffer ibuf = ByteBuffer.wrap(buf).asIntBuffer();
-			int offset = 0;
-			int len;
-			while ((len = is.read(buf, offset, buf.length - offset)) != -1) {
-				len += offset;
-				offset = len % PIXEL_LENGTH;
-				len -= offset;
-				for (int i = 0; i < len; i += PIXEL_LENGTH) {
-					readPixel(img, ibuf, i / 4);
-				}
-				for (int i = 0; i < offset; i++) {
-					buf[i] = buf[len + i];
-				}
+		}
+		final String resource = String.format("res/%s.robi", s);
+		BufferedImage img;
+		try (InputStream is = RobotImage.class.getResourceAsStream(resource)) {
+			if (is == null) {
+				throw new IOException("File not found: " + resource);
 			}
+			img = readRobi(is, resource);
 		} catch (IOException e) {
 			JOptionPane.showMessageDialog(null,
 					"There was an error loading your file.");
 			System.out.println("RobotImage: loadRobi\n" + e.getMessage());
-			img = loadDefaultRobi();
+			return getSharedRobi("rob");
+		}
+		synchronized (CACHE) {
+			// another thread may have loaded the same image meanwhile
+			final BufferedImage cached = CACHE.putIfAbsent(s, img);
+			return cached == null ? img : cached;
+		}
+	}
+
+	/**
+	 * Reads and decodes an image in robi format, without using the cache.
+	 *
+	 * @param is   the stream holding the image
+	 * @param name the name of the image, used in error messages
+	 * @return a new image
+	 * @throws IOException if the image can not be read or is corrupt
+	 */
+	static BufferedImage readRobi(InputStream is, String name) throws IOException {
+		final byte[] data = readFully(is);
+		final ByteBuffer buf = ByteBuffer.wrap(data);
+		if (data.length >= HEADER_LENGTH && buf.getInt(0) == MAGIC) {
+			return decodeRobi2(buf, name);
 		}
-		return img;
+		return decodeRobi(data, name);
 	}
 
-	private static void readPixel(BufferedImage img, IntBuffer ibuf, int pos) {
-		int x = ibuf.get(pos++);
-		int y = ibuf.get(pos++);
+	private static byte[] readFully(InputStream is) throws IOException {
+		ByteArrayOutputStream out = new ByteArrayOutputStream(Math.max(is.available(), 1 << 12));
+		byte[] buf = new byte[1 << 14];
+		int len;
+		while ((len = is.read(buf)) != -1) {
+			out.write(buf, 0, len);
+		}
+		return out.toByteArray();
+	}
+
+	/**
+	 * Decodes the pixel records into the array that backs a new image. The pixels
+	 * that have no record are transparent. Since the original format has no header,
+	 * data that is not a whole number of records is rejected as truncated or corrupt.
+	 */
+	private static BufferedImage decodeRobi(byte[] data, String name) throws IOException {
+		if (data.length == 0) {
+			throw new IOException(name + " has no pixels.");
+		}
+		if (data.length % PIXEL_LENGTH != 0) {
+			throw new IOException(name + " is truncated or corrupt.");
+		}
+		final int[] pixels = new int[IMG_WIDTH * IMG_HEIGHT];
+		final IntBuffer ibuf = ByteBuffer.wrap(data).asIntBuffer();
+		final int end = data.length / 4;
+		for (int pos = 0; pos < end; pos += PIXEL_LENGTH / 4) {
+			final int x = ibuf.get(pos);
+			final int y = ibuf.get(pos + 1);
+			if (x < 0 || x >= IMG_WIDTH || y < 0 || y >= IMG_HEIGHT) {
+				throw new IOException(name + " has a pixel out of bounds: " + x + ", " + y);
+			}
+			// Next 3 ints are the r, g, b components of the color
+			final int rgb = (ibuf.get(pos + 2) & 0xff) << 16 | (ibuf.get(pos + 3) & 0xff) << 8
+					| ibuf.get(pos + 4) & 0xff;
+			pixels[y * IMG_WIDTH + x] = rgb == TRANSPARENT_RGB ? rgb : rgb | 0xff000000;
+		}
+		return wrap(pixels, IMG_WIDTH, IMG_HEIGHT);
+	}
+
+	private static BufferedImage decodeRobi2(ByteBuffer buf, String name) throws IOException {
+		try {
+			final int version = buf.get(4);
+			final int encoding = buf.get(5);
+			final int width = buf.getShort(6) & 0xffff;
+			final int height = buf.getShort(8) & 0xffff;
+			if (version != VERSION || encoding != PALETTE_ENCODING && encoding != ARGB_ENCODING) {
+				throw new IOException(name + " is in an unknown version of the robi format.");
+			}
+			if (width == 0 || height == 0) {
+				throw new IOException(name + " has no pixels.");
+			}
+			if ((long) width * height > Integer.MAX_VALUE - 8) {
+				throw new IOException(name + " is too large.");
+			}
+			buf.position(HEADER_LENGTH);
+			final int[] palette;
+			if (encoding == PALETTE_ENCODING) {
+				palette = new int[(buf.get() & 0xff) + 1];
+				buf.asIntBuffer().get(palette);
+				buf.position(buf.position() + 4 * palette.length);
+			} else {
+				palette = null;
+			}
+			final int[] pixels = new int[width * height];
+			int i = 0;
+			while (i < pixels.length) {
+				final int end = i + (buf.get() & 0xff) + 1;
+				if (end > pixels.length) {
+					throw new IOException(name + " has more pixels than its size.");
+				}
+				final int argb = palette == null ? buf.getInt() : palette[buf.get() & 0xff];
+				Arrays.fill(pixels, i, end, argb);
+				i = end;
+			}
+			return wrap(pixels, width, height);
+		} catch (BufferUnderflowException | IndexOutOfBoundsException e) {
+			throw new IOException(name + " is truncated or corrupt.", e);
+		}
+	}
 
-		// Next 3 ints are the r, g, b components of the color
-		int rgb = 0;
-		for (int i = 0; i < 3; i++) {
-			rgb = rgb << 8 | ibuf.get(pos++) & 0xff;
+	/**
+	 * Writes an image in version 2 of the robi format, using the palette encoding
+	 * if the image has few enough colors.
+	 *
+	 * @param img the image, which must not be larger than 65535 pixels in either direction
+	 * @param out the stream to write to, which is not closed
+	 * @throws IOException if the image can not be written
+	 */
+	static void writeRobi(BufferedImage img, OutputStream out) throws IOException {
+		final int width = img.getWidth();
+		final int height = img.getHeight();
+		if (width > 0xffff || height > 0xffff) {
+			throw new IllegalArgumentException("The image is too large for the robi format.");
 		}
-		// The color 0xdcdcdc is chosen to encode transparency
-		if (rgb != 0xdcdcdc) {
-			rgb |= 0xff000000;
+		final int[] pixels = img.getRGB(0, 0, width, height, null, 0, width);
+		final Map<Integer, Integer> palette = new LinkedHashMap<>();
+		for (int argb : pixels) {
+			if (!palette.containsKey(argb)) {
+				if (palette.size() == MAX_PALETTE_SIZE) {
+					palette.clear();
+					break;
+				}
+				palette.put(argb, palette.size());
+			}
+		}
+		final DataOutputStream data = new DataOutputStream(new BufferedOutputStream(out));
+		data.writeInt(MAGIC);
+		data.writeByte(VERSION);
+		data.writeByte(palette.isEmpty() ? ARGB_ENCODING : PALETTE_ENCODING);
+		data.writeShort(width);
+		data.writeShort(height);
+		if (!palette.isEmpty()) {
+			data.writeByte(palette.size() - 1);
+			for (int argb : palette.keySet()) {
+				data.writeInt(argb);
+			}
 		}
+		for (int i = 0; i < pixels.length; ) {
+			final int argb = pixels[i];
+			int end = i + 1;
+			while (end < pixels.length && end - i < MAX_RUN && pixels[end] == argb) {
+				end++;
+			}
+			data.writeByte(end - i - 1);
+			if (palette.isEmpty()) {
+				data.writeInt(argb);
+			} else {
+				data.writeByte(palette.get(argb));
+			}
+			i = end;
+		}
+		data.flush();
+	}
+
+	/**
+	 * @return an image of type <code>TYPE_INT_ARGB</code> that is backed by the given pixels
+	 */
+	private static BufferedImage wrap(int[] pixels, int width, int height) {
+		final DirectColorModel cm = (DirectColorModel) ColorModel.getRGBdefault();
+		final WritableRaster raster = Raster.createPackedRaster(new DataBufferInt(pixels, pixels.length),
+				width, height, width, cm.getMasks(), null);
+		return new BufferedImage(cm, raster, false, null);
+	}
 
-		img.setRGB(x, y, rgb);
+	private static BufferedImage copy(BufferedImage img) {
+		final int[] pixels = ((DataBufferInt) img.getRaster().getDataBuffer()).getData();
+		return wrap(pixels.clone(), img.getWidth(), img.getHeight());
 	}
 
 	public static BufferedImage loadImage(File file) {
@@ -89,4 +303,22 @@ public class RobotImage {
 		return loadDefaultRobi();
 	}
 
+	/**
+	 * A map that evicts its least recently used entry once it holds more than
+	 * <code>CACHE_SIZE</code> entries.
+	 */
+	private static final class LruCache extends LinkedHashMap<String, BufferedImage> {
+
+		private static final long serialVersionUID = 1L;
+
+		LruCache() {
+			super(CACHE_SIZE, 0.75f, true);
+		}
+
+		@Override
+		protected boolean removeEldestEntry(Map.Entry<String, BufferedImage> eldest) {
+			return size() > CACHE_SIZE;
+		}
+	}
+
 }
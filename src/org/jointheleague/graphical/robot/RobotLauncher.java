@@ -0,0 +1,114 @@
+package org.jointheleague.graphical.robot;
+
+import java.lang.reflect.Method;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.Consumer;
+
+/**
+ * <p>
+ * Runs Robot programs, each on its own thread. On Java 21 and later, the
+ * programs run on virtual threads, so that thousands of Robots can be animated
+ * concurrently: a Robot spends most of its time waiting for the next tick, and
+ * a virtual thread that waits does not hold on to an operating system thread.
+ * On older versions of Java, the programs run on ordinary daemon threads.
+ * </p>
+ * <p>
+ * The threads used by the launcher do not keep the program alive by
+ * themselves. A program whose main method returns while Robots are still
+ * moving should therefore wait for the {@link Future}s returned by the
+ * launcher, unless the RobotWindow is showing.
+ * </p>
+ * <p>
+ * Example of how to use:
+ * </p>
+ * <pre>
+ * {@code
+ * for (Robot rob : robots) {
+ *     RobotLauncher.launch(rob, r -> {
+ *         r.penDown();
+ *         r.move(100);
+ *     });
+ * }
+ * }
+ * </pre>
+ */
+public final class RobotLauncher {
+
+    private static final boolean VIRTUAL;
+    private static final ExecutorService EXECUTOR;
+
+    static {
+        ExecutorService executor = null;
+        try {
+            Method factory = Executors.class.getMethod("newVirtualThreadPerTaskExecutor");
+            executor = (ExecutorService) factory.invoke(null);
+        } catch (ReflectiveOperationException | UnsupportedOperationException e) {
+            // virtual threads are not available in this version of Java
+        }
+        VIRTUAL = executor != null;
+        EXECUTOR = VIRTUAL ? executor : Executors.newCachedThreadPool(new DaemonThreadFactory());
+    }
+
+    private RobotLauncher() {
+    }
+
+    /**
+     * Runs a program on a new thread.
+     *
+     * @param program the program
+     * @return a Future that is done when the program has finished. Cancelling the
+     * Future interrupts the thread running the program.
+     */
+    public static Future<?> launch(final Runnable program) {
+        return EXECUTOR.submit(() -> {
+            try {
+                program.run();
+            } catch (RuntimeException | Error e) {
+                // report the failure as an uncaught exception would be reported
+                e.printStackTrace();
+                throw e;
+            }
+        });
+    }
+
+    /**
+     * Runs a program controlling a Robot on a new thread. Once the program has
+     * finished, the ink of the Robot's last microMoves, if any, is committed.
+     *
+     * @param robot   the Robot
+     * @param program the program, which is passed the Robot
+     * @return a Future that is done when the program has finished
+     */
+    public static Future<?> launch(final Robot robot, final Consumer<? super Robot> program) {
+        return launch(() -> {
+            try {
+                program.accept(robot);
+            } finally {
+                robot.sealTrail();
+            }
+        });
+    }
+
+    /**
+     * @return true if programs are run on virtual threads
+     */
+    public static boolean usesVirtualThreads() {
+        return VIRTUAL;
+    }
+
+    private static final class DaemonThreadFactory implements ThreadFactory {
+
+        private final AtomicInteger count = new AtomicInteger();
+
+        @Override
+        public Thread newThread(Runnable r) {
+            Thread thread = new Thread(r, "Robot-program-" + count.incrementAndGet());
+            thread.setDaemon(true);
+            return thread;
+        }
+    }
+}
@@ -0,0 +1,516 @@
+package org.jointheleague.graphical.robot;
+
+import javax.imageio.ImageIO;
+import java.awt.*;
+import java.awt.geom.Path2D;
+import java.awt.geom.PathIterator;
+import java.awt.image.BufferedImage;
+import java.io.*;
+
+/**
+ * Records the calls made to a Robot in a compact binary log, which
+ * {@link RobotReplayer} plays back on another Robot later, without running
+ * the program that made the calls, e.g., to investigate a rendering bug or
+ * to measure the renderer with a real program. The replayed Robot makes the
+ * same calls in the same order, so it moves through the same positions and
+ * draws the same ink as the recorded Robot.
+ * <p>
+ * The recorder is a {@link RobotInterface} that wraps the Robot: a program
+ * calls the recorder instead of the Robot, and the recorder records each call
+ * that changes the Robot before passing it on. The moves made by a
+ * {@link KeyboardAdapter} are recorded too. Each call is recorded with the
+ * tick of the wall clock in which it was made, counted from the start of the
+ * recording, so that the pauses between the calls are replayed as well. The
+ * timing is therefore only approximate: on a busy machine, a call may be
+ * replayed a tick earlier or later than it was made, relative to the frames
+ * and to the other Robots. Robots whose calls must interleave exactly are
+ * run in lockstep with a {@link LockstepClock} instead. Colors chosen at
+ * random are recorded as the colors that were chosen.
+ * </p>
+ * <p>
+ * The log starts with the state of the Robot when the recording starts,
+ * i.e., its position, heading, pen and speed, followed by one record per
+ * call: the number of ticks since the previous call, in as many bytes as
+ * needed, a byte that identifies the method, and the arguments.
+ * </p>
+ */
+public final class RobotRecorder implements RobotInterface, Closeable {
+
+    static final int MAGIC = 0x52524543; // "RREC"
+    static final int VERSION = 1;
+    private static final long TICK_NANOS = Robot.TICK_LENGTH * 1_000_000L;
+
+    // the methods, as recorded
+    static final int CHANGE_ROBOT_IMAGE = 1;
+    static final int CHANGE_ROBOT_URL = 2;
+    static final int PEN_WIDTH = 3;
+    static final int PEN_COLOR = 4;
+    static final int NO_PEN_COLOR = 5;
+    static final int CLEAR_DRAWABLES = 6;
+    static final int MINIATURIZE = 7;
+    static final int EXPAND = 8;
+    static final int SET_POS = 9;
+    static final int SET_ANGLE = 10;
+    static final int SPARKLE = 11;
+    static final int UN_SPARKLE = 12;
+    static final int HIDE = 13;
+    static final int SHOW = 14;
+    static final int MOVE = 15;
+    static final int MICRO_MOVE = 16;
+    static final int TURN = 17;
+    static final int TURN_TO = 18;
+    static final int MICRO_TURN = 19;
+    static final int SLEEP = 20;
+    static final int MOVE_TO = 21;
+    static final int LINE_TO = 22;
+    static final int QUAD_TO = 23;
+    static final int CUBIC_TO = 24;
+    static final int FOLLOW_PATH = 25;
+    static final int PEN_UP = 26;
+    static final int PEN_DOWN = 27;
+    static final int SPEED = 28;
+
+    private final Robot robot;
+    private final DataOutputStream out;
+    private final long start = System.nanoTime();
+    private long lastTick = 0L; // guarded by this
+    private IOException error; // the first error, reported by close(); guarded by this
+
+    /**
+     * Starts recording the calls made to a Robot.
+     *
+     * @param robot the Robot
+     * @param out   the stream to write the log to, which is closed when the recorder is closed
+     * @throws IOException if the start of the log can not be written
+     * @throws IllegalStateException if the Robot is already being recorded
+     */
+    public RobotRecorder(Robot robot, OutputStream out) throws IOException {
+        this.robot = robot;
+        this.out = new DataOutputStream(new BufferedOutputStream(out));
+        final DataOutputStream o = this.out;
+        // the moves made from the keyboard are not recorded before the start of the log is written
+        synchronized (this) {
+            robot.setRecorder(this); // first, so that nothing is written if the Robot is already recorded
+            try {
+                o.writeInt(MAGIC);
+                o.writeInt(VERSION);
+                synchronized (robot) {
+                    o.writeFloat(robot.getX());
+                    o.writeFloat(robot.getY());
+                    o.writeDouble(robot.getAngle());
+                    o.writeByte(robot.getPenWidth());
+                    final Color color = robot.getPenColor();
+                    o.writeBoolean(color != null);
+                    o.writeInt(color == null ? 0 : color.getRGB());
+                    o.writeBoolean(robot.isPenDown());
+                    o.writeByte(robot.getSpeed());
+                    o.writeBoolean(robot.isVisible());
+                    o.writeBoolean(robot.isMini());
+                }
+            } catch (IOException e) {
+                robot.setRecorder(null);
+                throw e;
+            }
+        }
+    }
+
+    /**
+     * @return the Robot that is recorded
+     */
+    public Robot getRobot() {
+        return robot;
+    }
+
+    /**
+     * Writes the start of a record, i.e., the number of ticks since the previous record
+     * and the method. The caller must hold the lock on this recorder.
+     */
+    private void begin(int method) throws IOException {
+        final long tick = (System.nanoTime() - start) / TICK_NANOS;
+        long delta = Math.max(0L, tick - lastTick);
+        lastTick += delta;
+        while (delta >= 0x80) {
+            out.writeByte((int) (delta & 0x7F) | 0x80);
+            delta >>>= 7;
+        }
+        out.writeByte((int) delta);
+        out.writeByte(method);
+    }
+
+    private synchronized void record(int method) {
+        try {
+            begin(method);
+        } catch (IOException e) {
+            fail(e);
+        }
+    }
+
+    private synchronized void recordInt(int method, int value) {
+        try {
+            begin(method);
+            out.writeInt(value);
+        } catch (IOException e) {
+            fail(e);
+        }
+    }
+
+    private synchronized void recordDouble(int method, double value) {
+        try {
+            begin(method);
+            out.writeDouble(value);
+        } catch (IOException e) {
+            fail(e);
+        }
+    }
+
+    private synchronized void recordPoints(int method, boolean relative, float... coords) {
+        try {
+            begin(method);
+            for (float c : coords) {
+                out.writeFloat(c);
+            }
+            if (method != SET_POS) out.writeBoolean(relative);
+        } catch (IOException e) {
+            fail(e);
+        }
+    }
+
+    private synchronized void recordPenColor(Color color) {
+        try {
+            if (color == null) {
+                begin(NO_PEN_COLOR);
+            } else {
+                begin(PEN_COLOR);
+                out.writeInt(color.getRGB());
+            }
+        } catch (IOException e) {
+            fail(e);
+        }
+    }
+
+    /**
+     * Records the first error only, since the log is useless after it.
+     */
+    private void fail(IOException e) {
+        if (error == null) {
+            error = e;
+            System.err.println("The calls made to the robot can no longer be recorded.");
+            e.printStackTrace();
+        }
+    }
+
+    void recordMicroMove(int sgn) {
+        recordInt(MICRO_MOVE, sgn);
+    }
+
+    void recordMicroTurn(int sgn) {
+        recordInt(MICRO_TURN, sgn);
+    }
+
+    @Override
+    public void changeRobot(BufferedImage im) {
+        synchronized (this) {
+            try {
+                final ByteArrayOutputStream png = new ByteArrayOutputStream();
+                ImageIO.write(im, "png", png);
+                begin(CHANGE_ROBOT_IMAGE);
+                out.writeInt(png.size());
+                png.writeTo(out);
+            } catch (IOException e) {
+                fail(e);
+            }
+        }
+        robot.changeRobot(im);
+    }
+
+    @Override
+    public void changeRobot(String urlName) {
+        synchronized (this) {
+            try {
+                begin(CHANGE_ROBOT_URL);
+                out.writeUTF(urlName);
+            } catch (IOException e) {
+                fail(e);
+            }
+        }
+        robot.changeRobot(urlName);
+    }
+
+    @Override
+    public int getPenWidth() {
+        return robot.getPenWidth();
+    }
+
+    @Override
+    public void setPenWidth(int size) {
+        recordInt(PEN_WIDTH, size);
+        robot.setPenWidth(size);
+    }
+
+    @Override
+    public Color getPenColor() {
+        return robot.getPenColor();
+    }
+
+    @Override
+    public void setPenColor(Color color) {
+        recordPenColor(color);
+        robot.setPenColor(color);
+    }
+
+    @Override
+    public void setPenColor(int r, int g, int b) {
+        robot.setPenColor(r, g, b);
+        recordPenColor(robot.getPenColor());
+    }
+
+    @Override
+    public void setRandomPenColor() {
+        robot.setRandomPenColor();
+        recordPenColor(robot.getPenColor());
+    }
+
+    @Override
+    public void clearDrawables() {
+        record(CLEAR_DRAWABLES);
+        robot.clearDrawables();
+    }
+
+    @Override
+    public void miniaturize() {
+        record(MINIATURIZE);
+        robot.miniaturize();
+    }
+
+    @Override
+    public void expand() {
+        record(EXPAND);
+        robot.expand();
+    }
+
+    @Override
+    public void setPos(float x, float y) {
+        recordPoints(SET_POS, false, x, y);
+        robot.setPos(x, y);
+    }
+
+    @Override
+    public double getAngle() {
+        return robot.getAngle();
+    }
+
+    @Override
+    public void setAngle(double a) {
+        recordDouble(SET_ANGLE, a);
+        robot.setAngle(a);
+    }
+
+    @Override
+    public void sparkle() {
+        record(SPARKLE);
+        robot.sparkle();
+    }
+
+    @Override
+    public void unSparkle() {
+        record(UN_SPARKLE);
+        robot.unSparkle();
+    }
+
+    @Override
+    public void hide() {
+        record(HIDE);
+        robot.hide();
+    }
+
+    @Override
+    public void show() {
+        record(SHOW);
+        robot.show();
+    }
+
+    @Override
+    public void move(int distance) {
+        recordInt(MOVE, distance);
+        robot.move(distance);
+    }
+
+    @Override
+    public void microMove(int sgn) throws InterruptedException {
+        robot.microMove(sgn); // recorded by the Robot, like the moves made from the keyboard
+    }
+
+    @Override
+    public void turn(double degrees) {
+        recordDouble(TURN, degrees);
+        robot.turn(degrees);
+    }
+
+    @Override
+    public void turnTo(double degrees) {
+        recordDouble(TURN_TO, degrees);
+        robot.turnTo(degrees);
+    }
+
+    @Override
+    public void microTurn(int sgn) throws InterruptedException {
+        robot.microTurn(sgn); // recorded by the Robot, like the turns made from the keyboard
+    }
+
+    @Override
+    public void sleep(int millis) {
+        recordInt(SLEEP, millis);
+        robot.sleep(millis);
+    }
+
+    @Override
+    @Deprecated
+    public void moveTo(float x, float y) {
+        setPos(x, y);
+    }
+
+    @Override
+    public void moveTo(float x, float y, boolean relative) {
+        recordPoints(MOVE_TO, relative, x, y);
+        robot.moveTo(x, y, relative);
+    }
+
+    @Override
+    public void lineTo(float x, float y, boolean relative) {
+        recordPoints(LINE_TO, relative, x, y);
+        robot.lineTo(x, y, relative);
+    }
+
+    @Override
+    public void quadTo(float x1, float y1, float x2, float y2, boolean relative) {
+        recordPoints(QUAD_TO, relative, x1, y1, x2, y2);
+        robot.quadTo(x1, y1, x2, y2, relative);
+    }
+
+    @Override
+    public void cubicTo(float x1, float y1, float x2, float y2, float x3, float y3, boolean relative) {
+        recordPoints(CUBIC_TO, relative, x1, y1, x2, y2, x3, y3);
+        robot.cubicTo(x1, y1, x2, y2, x3, y3, relative);
+    }
+
+    /**
+     * Records the path, which is consumed by the recorder, and makes the Robot
+     * follow a copy of it.
+     */
+    @Override
+    public void followPath(PathIterator pathIterator, boolean fill) {
+        final Path2D path = new Path2D.Float(pathIterator.getWindingRule());
+        final float[] coords = new float[6];
+        synchronized (this) {
+            try {
+                begin(FOLLOW_PATH);
+                out.writeBoolean(fill);
+                out.writeByte(pathIterator.getWindingRule());
+                for (; !pathIterator.isDone(); pathIterator.next()) {
+                    final int type = pathIterator.currentSegment(coords);
+                    out.writeByte(type);
+                    final int numCoords = type == PathIterator.SEG_CUBICTO ? 6
+                            : type == PathIterator.SEG_QUADTO ? 4
+                            : type == PathIterator.SEG_CLOSE ? 0 : 2;
+                    for (int i = 0; i < numCoords; i++) {
+                        out.writeFloat(coords[i]);
+                    }
+                    appendSegment(path, type, coords);
+                }
+                out.writeByte(-1); // the end of the path
+            } catch (IOException e) {
+                fail(e);
+                for (; !pathIterator.isDone(); pathIterator.next()) {
+                    appendSegment(path, pathIterator.currentSegment(coords), coords);
+                }
+            }
+        }
+        robot.followPath(path.getPathIterator(null), fill);
+    }
+
+    static void appendSegment(Path2D path, int type, float[] coords) {
+        switch (type) {
+            case PathIterator.SEG_MOVETO:
+                path.moveTo(coords[0], coords[1]);
+                break;
+            case PathIterator.SEG_LINETO:
+                path.lineTo(coords[0], coords[1]);
+                break;
+            case PathIterator.SEG_QUADTO:
+                path.quadTo(coords[0], coords[1], coords[2], coords[3]);
+                break;
+            case PathIterator.SEG_CUBICTO:
+                path.curveTo(coords[0], coords[1], coords[2], coords[3], coords[4], coords[5]);
+                break;
+            case PathIterator.SEG_CLOSE:
+                path.closePath();
+                break;
+            default:
+                throw new IllegalArgumentException("Unknown segment type: " + type);
+        }
+    }
+
+    @Override
+    public void followPath(PathIterator pathIterator) {
+        followPath(pathIterator, false);
+    }
+
+    @Override
+    public float getX() {
+        return robot.getX();
+    }
+
+    @Override
+    public float getY() {
+        return robot.getY();
+    }
+
+    @Override
+    public void penUp() {
+        record(PEN_UP);
+        robot.penUp();
+    }
+
+    @Override
+    public void penDown() {
+        record(PEN_DOWN);
+        robot.penDown();
+    }
+
+    @Override
+    public void setSpeed(int speed) {
+        recordInt(SPEED, speed);
+        robot.setSpeed(speed);
+    }
+
+    /**
+     * Not recorded, but the moves made by the adapter are.
+     */
+    @Override
+    public void addKeyboardAdapter(KeyboardAdapter adapter) {
+        robot.addKeyboardAdapter(adapter);
+    }
+
+    /**
+     * Writes the buffered records to the stream.
+     *
+     * @throws IOException if the records can not be written
+     */
+    public synchronized void flush() throws IOException {
+        out.flush();
+    }
+
+    /**
+     * Stops recording and closes the stream.
+     *
+     * @throws IOException if the log can not be written, or if writing it failed earlier
+     */
+    @Override
+    public void close() throws IOException {
+        robot.setRecorder(null);
+        synchronized (this) {
+            out.close();
+            if (error != null) throw error;
+        }
+    }
+}
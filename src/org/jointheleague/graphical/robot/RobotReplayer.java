@@ -0,0 +1,242 @@
+package org.jointheleague.graphical.robot;
+
+import javax.imageio.ImageIO;
+import java.awt.*;
+import java.awt.geom.Path2D;
+import java.awt.geom.PathIterator;
+import java.awt.image.BufferedImage;
+import java.io.*;
+
+import static org.jointheleague.graphical.robot.RobotRecorder.*;
+
+/**
+ * Replays the calls recorded by a {@link RobotRecorder} on a Robot, which
+ * then draws what the recorded Robot drew. The calls go through the same
+ * methods as when they were recorded, so replaying a recording exercises the
+ * same code as running the program that made it.
+ * <p>
+ * A recording is replayed at the pace at which it was recorded, a number
+ * of times faster, or as fast as possible. When a recording is replayed
+ * faster, the Robot advances several ticks per frame, so that it moves
+ * along exactly the same positions as when the recording was made, but only
+ * every n-th position is shown. Replaying does not depend on turbo mode and
+ * does not affect the other Robots.
+ * </p>
+ */
+public final class RobotReplayer {
+
+    /**
+     * The rate at which a recording is replayed as fast as possible.
+     */
+    public static final int INSTANT = 0;
+
+    private static final long TICK_NANOS = Robot.TICK_LENGTH * 1_000_000L;
+
+    private final DataInputStream in;
+    private final float[] coords = new float[6];
+
+    /**
+     * @param in the stream to read the recording from
+     * @throws IOException if the stream can not be read or does not hold a recording
+     */
+    public RobotReplayer(InputStream in) throws IOException {
+        this.in = new DataInputStream(new BufferedInputStream(in));
+        if (this.in.readInt() != MAGIC || this.in.readInt() != VERSION) {
+            throw new IOException("Not a recording of a robot.");
+        }
+    }
+
+    /**
+     * Replays the recording. Like the methods of a Robot, this method blocks
+     * until the Robot has done everything that was recorded. The Robot is first
+     * put in the state that the recorded Robot was in when the recording
+     * started. The drawables that the Robot has already committed are kept.
+     *
+     * @param robot the Robot
+     * @param rate  how many times faster than it was recorded the recording is replayed,
+     *              or {@link #INSTANT}
+     * @throws IOException if the recording can not be read, or if it ends in the middle of
+     *                     a call, in which case the calls before that one have been replayed
+     */
+    public void replay(Robot robot, int rate) throws IOException {
+        if (rate < 0) throw new IllegalArgumentException("The rate must not be negative.");
+        robot.setTicksPerFrame(rate);
+        try {
+            restoreState(robot);
+            final long start = System.nanoTime();
+            long tick = 0L;
+            int b;
+            while ((b = in.read()) != -1) {
+                long delta = b & 0x7F;
+                for (int shift = 7; (b & 0x80) != 0; shift += 7) {
+                    b = in.readUnsignedByte();
+                    delta |= (long) (b & 0x7F) << shift;
+                }
+                tick += delta;
+                if (rate != INSTANT) awaitTick(start, tick, rate);
+                replayCall(robot, in.readUnsignedByte());
+            }
+        } catch (EOFException e) {
+            throw new IOException("The recording ends in the middle of a call.", e);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        } finally {
+            robot.sealTrail();
+            robot.setTicksPerFrame(1);
+        }
+    }
+
+    private void restoreState(Robot robot) throws IOException {
+        robot.setPos(in.readFloat(), in.readFloat());
+        robot.setAngle(in.readDouble());
+        robot.setPenWidth(in.readUnsignedByte());
+        final boolean hasColor = in.readBoolean();
+        final int rgb = in.readInt();
+        robot.setPenColor(hasColor ? new Color(rgb, true) : null);
+        if (in.readBoolean()) {
+            robot.penDown();
+        } else {
+            robot.penUp();
+        }
+        robot.setSpeed(in.readUnsignedByte());
+        if (in.readBoolean()) {
+            robot.show();
+        } else {
+            robot.hide();
+        }
+        if (in.readBoolean()) {
+            robot.miniaturize();
+        } else {
+            robot.expand();
+        }
+    }
+
+    /**
+     * Waits until the call recorded in the given tick is due, so that the pauses
+     * between the recorded calls are replayed.
+     */
+    private static void awaitTick(long start, long tick, int rate) throws InterruptedException {
+        final long due = start + tick * TICK_NANOS / rate;
+        long remaining;
+        while ((remaining = due - System.nanoTime()) > 0) {
+            Thread.sleep(remaining / 1_000_000L, (int) (remaining % 1_000_000L));
+        }
+    }
+
+    private void replayCall(Robot robot, int method) throws IOException, InterruptedException {
+        switch (method) {
+            case CHANGE_ROBOT_IMAGE: {
+                final byte[] png = new byte[in.readInt()];
+                in.readFully(png);
+                final BufferedImage image = ImageIO.read(new ByteArrayInputStream(png));
+                if (image == null) throw new IOException("The recorded image of the robot can not be read.");
+                robot.changeRobot(image);
+                break;
+            }
+            case CHANGE_ROBOT_URL:
+                robot.changeRobot(in.readUTF());
+                break;
+            case PEN_WIDTH:
+                robot.setPenWidth(in.readInt());
+                break;
+            case PEN_COLOR:
+                robot.setPenColor(new Color(in.readInt(), true));
+                break;
+            case NO_PEN_COLOR:
+                robot.setPenColor(null);
+                break;
+            case CLEAR_DRAWABLES:
+                robot.clearDrawables();
+                break;
+            case MINIATURIZE:
+                robot.miniaturize();
+                break;
+            case EXPAND:
+                robot.expand();
+                break;
+            case SET_POS:
+                robot.setPos(in.readFloat(), in.readFloat());
+                break;
+            case SET_ANGLE:
+                robot.setAngle(in.readDouble());
+                break;
+            case SPARKLE:
+                robot.sparkle();
+                break;
+            case UN_SPARKLE:
+                robot.unSparkle();
+                break;
+            case HIDE:
+                robot.hide();
+                break;
+            case SHOW:
+                robot.show();
+                break;
+            case MOVE:
+                robot.move(in.readInt());
+                break;
+            case MICRO_MOVE:
+                robot.microMove(in.readInt());
+                break;
+            case TURN:
+                robot.turn(in.readDouble());
+                break;
+            case TURN_TO:
+                robot.turnTo(in.readDouble());
+                break;
+            case MICRO_TURN:
+                robot.microTurn(in.readInt());
+                break;
+            case SLEEP:
+                robot.sleep(in.readInt());
+                break;
+            case MOVE_TO:
+                readCoords(2);
+                robot.moveTo(coords[0], coords[1], in.readBoolean());
+                break;
+            case LINE_TO:
+                readCoords(2);
+                robot.lineTo(coords[0], coords[1], in.readBoolean());
+                break;
+            case QUAD_TO:
+                readCoords(4);
+                robot.quadTo(coords[0], coords[1], coords[2], coords[3], in.readBoolean());
+                break;
+            case CUBIC_TO:
+                readCoords(6);
+                robot.cubicTo(coords[0], coords[1], coords[2], coords[3], coords[4], coords[5],
+                        in.readBoolean());
+                break;
+            case FOLLOW_PATH: {
+                final boolean fill = in.readBoolean();
+                final Path2D path = new Path2D.Float(in.readUnsignedByte());
+                int type;
+                while ((type = in.readByte()) != -1) {
+                    readCoords(type == PathIterator.SEG_CUBICTO ? 6
+                            : type == PathIterator.SEG_QUADTO ? 4
+                            : type == PathIterator.SEG_CLOSE ? 0 : 2);
+                    appendSegment(path, type, coords);
+                }
+                robot.followPath(path.getPathIterator(null), fill);
+                break;
+            }
+            case PEN_UP:
+                robot.penUp();
+                break;
+            case PEN_DOWN:
+                robot.penDown();
+                break;
+            case SPEED:
+                robot.setSpeed(in.readInt());
+                break;
+            default:
+                throw new IOException("Unknown call in the recording: " + method);
+        }
+    }
+
+    private void readCoords(int numCoords) throws IOException {
+        for (int i = 0; i < numCoords; i++) {
+            coords[i] = in.readFloat();
+        }
+    }
+}
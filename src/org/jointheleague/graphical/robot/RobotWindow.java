@@ -3,14 +3,28 @@ package org.jointheleague.graphical.robot;
 import javax.imageio.ImageIO;
 import javax.swing.*;
 import java.awt.*;
-import java.awt.event.ActionListener;
 import java.awt.image.BufferedImage;
-import java.io.IOException;
+import java.io.*;
+import java.nio.charset.StandardCharsets;
 import java.lang.reflect.InvocationTargetException;
 import java.util.ArrayList;
+import java.util.Collections;
+import java.util.IdentityHashMap;
+import java.util.Set;
+import java.util.concurrent.atomic.AtomicReference;
 
 /**
  * Singleton class that defines the window in which the Robots move around.
+ * <p>
+ * The window is normally shown on the screen. When running with
+ * <code>java.awt.headless=true</code>, the window is rendered offscreen
+ * instead, and its contents can be obtained through {@link #snapshot()} and
+ * {@link #writePng(File)}.
+ * </p>
+ * <p>
+ * The ink of the Robots can also be exported on its own, at any size, with
+ * {@link #writeSvg(File)} and {@link #writeInkPng(File, double)}.
+ * </p>
  *
  * @author David Dunn &amp; Erik Colban &copy; 2016
  */
@@ -20,23 +34,32 @@ public class RobotWindow extends JPanel {
     private static final int WINDOW_HEIGHT = 600;
     private static final int WINDOW_WIDTH = 900;
     private static final Color DEFAULT_WINDOW_COLOR = new Color(0xdcdcdc);
-    private static final int MARGIN = 10;
+    // if the damaged area exceeds this fraction of the panel, the whole panel is repainted
+    private static final double FULL_REPAINT_THRESHOLD = 0.5;
     private static final RobotWindow INSTANCE = new RobotWindow(DEFAULT_WINDOW_COLOR);
 
     private Color winColor;
 
     private ArrayList<Robot> robotList;
-    private Timer ticker;
+    // the Robots removed since robotList was last purged, so that removing a whole swarm takes linear time
+    private final Set<Robot> removedRobots = Collections.newSetFromMap(new IdentityHashMap<>());
+    private final FrameScheduler scheduler = new FrameScheduler(this);
+    private final BackgroundLayer background = new BackgroundLayer();
+    private final InkLayer inkLayer = new InkLayer();
+    private final SpriteLayer spriteLayer = new SpriteLayer();
+    private final Rectangle damage = new Rectangle();
 
     private BufferedImage leagueLogo;
     private boolean usingCustomImage;
+    private int backgroundVersion; // the number of times the background image was set
 
     private boolean guiHasBeenBuilt = false;
 
-    private JFrame frame;
+    private final RobotCanvas canvas;
 
     private RobotWindow(Color color) {
         winColor = color;
+        canvas = GraphicsEnvironment.isHeadless() ? new ImageCanvas(this) : new SwingCanvas(this);
         robotList = new ArrayList<>();
         try {
             leagueLogo = ImageIO.read(this.getClass().getResourceAsStream("res/league_logo.png"));
@@ -55,38 +78,31 @@ public class RobotWindow extends JPanel {
         return INSTANCE;
     }
 
-    private void buildGui() {
-        frame = new JFrame();
-        setPreferredSize(new Dimension(WINDOW_WIDTH, WINDOW_HEIGHT));
-        frame.add(this);
-        // frame.setSize(Toolkit.getDefaultToolkit().getScreenSize());
-        frame.setDefaultCloseOperation(WindowConstants.EXIT_ON_CLOSE);
-        frame.setResizable(true);
-        frame.pack();
-        frame.setVisible(true);
-        setFocusable(true);
+    public void paintComponent(Graphics g) {
+        paintScene((Graphics2D) g);
     }
 
-    public void paintComponent(Graphics g) {
-        Graphics2D g2 = (Graphics2D) g;
+    /**
+     * Paints the background, the ink and the Robots. This method should be invoked on the EDT only.
+     *
+     * @param g2 the graphics context
+     */
+    void paintScene(Graphics2D g2) {
+        purgeRemovedRobots();
+        damage.setBounds(0, 0, 0, 0);
 
-        g2.setColor(winColor);
-        g2.fillRect(0, 0, getWidth(), getHeight());
-        if (usingCustomImage) {
-            g2.drawImage(leagueLogo, 0, 0, WINDOW_WIDTH, WINDOW_HEIGHT, null);
-        } else {
-            int imgX = getWidth() - leagueLogo.getWidth() - MARGIN;
-            int imgY = MARGIN;
-            g2.drawImage(leagueLogo, imgX, imgY, null);
-        }
+        background.paint(g2, winColor, leagueLogo, usingCustomImage, getWidth(), getHeight());
 
         RenderingHints renderingHints = new RenderingHints(
                 RenderingHints.KEY_ANTIALIASING,
                 RenderingHints.VALUE_ANTIALIAS_ON);
         g2.setRenderingHints(renderingHints);
-        for (Robot robot : robotList) {
-            robot.draw(g2);
-        }
+        inkLayer.paint(g2, robotList, getWidth(), getHeight());
+        spriteLayer.paint(g2, robotList, getWidth(), getHeight());
+    }
+
+    FrameScheduler getScheduler() {
+        return scheduler;
     }
 
     /**
@@ -95,25 +111,85 @@ public class RobotWindow extends JPanel {
      * @param robot the robot
      */
     void addRobot(final Robot robot) {
-        final ActionListener tickerListener = robot.getTickerListener();
         try {
             SwingUtilities.invokeAndWait(() -> {
                 if (!guiHasBeenBuilt) {
-                    buildGui();
-                    ticker = new Timer(Robot.TICK_LENGTH, tickerListener);
-                    ticker.start();
+                    canvas.build(WINDOW_WIDTH, WINDOW_HEIGHT);
                     guiHasBeenBuilt = true;
-                } else {
-                    ticker.addActionListener(tickerListener);
                 }
+                purgeRemovedRobots();
+                scheduler.register(robot);
                 robotList.add(robot);
-                repaint();
+                canvas.repaint(null);
             });
         } catch (InvocationTargetException | InterruptedException e) {
             e.printStackTrace();
         }
     }
 
+    /**
+     * Removes a robot from the window. The robot is no longer drawn and no
+     * longer receives ticks, so a thread that moves it blocks until it is
+     * interrupted, e.g., by cancelling the {@link java.util.concurrent.Future}
+     * returned by {@link RobotLauncher}. The program controlling the robot
+     * should therefore be stopped first. This method may be invoked from any
+     * thread, and removing any number of robots takes time in proportion to the
+     * number of robots in the window.
+     *
+     * @param robot the robot
+     */
+    public void removeRobot(final Robot robot) {
+        SwingUtilities.invokeLater(() -> {
+            scheduler.unregister(robot);
+            if (removedRobots.isEmpty()) SwingUtilities.invokeLater(this::purgeRemovedRobots);
+            removedRobots.add(robot);
+            inkLayer.invalidate();
+            canvas.repaint(null);
+        });
+    }
+
+    /**
+     * Removes the robots that have been removed since the last purge from the
+     * list of robots, in a single pass that keeps the order in which the other
+     * robots are drawn.
+     */
+    private void purgeRemovedRobots() {
+        if (removedRobots.isEmpty()) return;
+        robotList.removeIf(removedRobots::contains);
+        removedRobots.clear();
+    }
+
+    /**
+     * Repaints an area that has been damaged by a Robot. The damaged areas are
+     * accumulated until the next time the panel is painted, and if they add up
+     * to a large part of the panel, the whole panel is repainted instead. This
+     * method should be invoked on the EDT only.
+     *
+     * @param area the damaged area, or null if nothing needs to be repainted
+     */
+    void repaintDamage(Rectangle area) {
+        if (area == null) return;
+        if (damage.isEmpty()) {
+            damage.setBounds(area);
+        } else {
+            damage.add(area);
+        }
+        if ((double) damage.width * damage.height > FULL_REPAINT_THRESHOLD * getWidth() * getHeight()) {
+            canvas.repaint(null);
+        } else {
+            canvas.repaint(area);
+        }
+    }
+
+    /**
+     * Discards the retained ink of all Robots so that it is redrawn on the next frame.
+     * This method may be invoked from any thread.
+     */
+    void invalidateInk() {
+        inkLayer.invalidate();
+        canvas.repaint(null);
+    }
+
     /**
      * Set the RobotWindow's background Color. This method should be invoked on the EDT only.
      *
@@ -121,24 +197,50 @@ public class RobotWindow extends JPanel {
      */
     public void setWinColor(Color color) {
         winColor = color;
-        repaint();
+        background.invalidate();
+        canvas.repaint(null);
     }
 
     /**
-     * Set the RobotWindow's background Image. This method should be invoked on the EDT only.
+     * Set the RobotWindow's background Image once it is loaded. The image is loaded
+     * in the background, so this method returns at once. This method should be
+     * invoked on the EDT only.
      *
-     * @param imageLocation the location of the background image
+     * @param imageLocation the URL, classpath resource or file path of the background
+     *                      image. See {@link AssetManager}.
      */
     public void setBackgroundImage(String imageLocation) {
-        try {
-            leagueLogo = ImageIO.read(this.getClass().getResourceAsStream("../../../../" + imageLocation));
-        } catch (IOException e) {
-            System.err.println("Cannot load background image.");
-        }
-        usingCustomImage = true;
-        repaint();
+        final int version = ++backgroundVersion;
+        AssetManager.load(imageLocation).whenComplete((image, failure) -> {
+            if (failure == null) {
+                SwingUtilities.invokeLater(() -> {
+                    if (version == backgroundVersion) showBackgroundImage(image);
+                });
+            } else {
+                System.err.println("Cannot load background image.");
+                (failure.getCause() != null ? failure.getCause() : failure).printStackTrace();
+            }
+        });
     }
 
+    /**
+     * Set the RobotWindow's background Image. The image is scaled to the size of the
+     * window once, so changes made to it afterwards are not shown until it is set
+     * again. This method should be invoked on the EDT only.
+     *
+     * @param image the background image, which is scaled to the size of the window
+     */
+    public void setBackgroundImage(BufferedImage image) {
+        ++backgroundVersion;
+        showBackgroundImage(image);
+    }
+
+    private void showBackgroundImage(BufferedImage image) {
+        leagueLogo = image;
+        usingCustomImage = true;
+        background.invalidate();
+        canvas.repaint(null);
+    }
 
     /**
      * Sets the dimension of the panel containing the robots. This method should be invoked on the EDT only.
@@ -147,8 +249,98 @@ public class RobotWindow extends JPanel {
      * @param height the height of the panel
      */
     public void setWindowSize(int width, int height) {
-        setPreferredSize(new Dimension(width, height));
-        frame.pack();
+        canvas.setSize(width, height);
+    }
+
+    /**
+     * Renders the current contents of the window into an image. This method may be
+     * invoked from any thread.
+     *
+     * @return an image of the window's current contents
+     */
+    public BufferedImage snapshot() {
+        if (SwingUtilities.isEventDispatchThread()) return paintSnapshot();
+        AtomicReference<BufferedImage> image = new AtomicReference<>();
+        try {
+            SwingUtilities.invokeAndWait(() -> image.set(paintSnapshot()));
+        } catch (InvocationTargetException | InterruptedException e) {
+            e.printStackTrace();
+        }
+        return image.get();
+    }
+
+    /**
+     * Paints the whole scene into a new image, whatever the canvas: the Robots may
+     * have moved since the scheduler last reported damage. Invoked on the EDT only.
+     */
+    private BufferedImage paintSnapshot() {
+        BufferedImage image = new BufferedImage(getWidth(), getHeight(), BufferedImage.TYPE_INT_RGB);
+        Graphics2D g2 = image.createGraphics();
+        paintScene(g2);
+        g2.dispose();
+        return image;
+    }
+
+    /**
+     * Writes the current contents of the window to a file in PNG format. This method
+     * may be invoked from any thread.
+     *
+     * @param file the file to write to
+     * @throws IOException if the file cannot be written
+     */
+    public void writePng(File file) throws IOException {
+        ImageIO.write(snapshot(), "png", file);
+    }
+
+    /**
+     * Writes the ink that the Robots have committed so far to a file in SVG format,
+     * without the background and the Robots. The ink is streamed to the file, so that
+     * large drawings can be exported. This method may be invoked from any thread
+     * but the EDT, and the Robots may keep drawing meanwhile.
+     *
+     * @param file the file to write to
+     * @throws IOException if the file cannot be written
+     */
+    public void writeSvg(File file) throws IOException {
+        try (InkExporter exporter = createExporter();
+             Writer out = new BufferedWriter(new OutputStreamWriter(new FileOutputStream(file), StandardCharsets.UTF_8))) {
+            exporter.writeSvg(out);
+        }
+    }
+
+    /**
+     * Writes the ink that the Robots have committed so far to a file in PNG format,
+     * at any resolution and on a transparent background. The image is rendered in
+     * strips, so that it may be much larger than the memory available. This method
+     * may be invoked from any thread but the EDT, and the Robots may keep drawing
+     * meanwhile.
+     *
+     * @param file  the file to write to
+     * @param scale the size of the image relative to the window, e.g., 4 to export the
+     *              ink at four times the window's resolution
+     * @throws IOException if the file cannot be written
+     */
+    public void writeInkPng(File file, double scale) throws IOException {
+        try (InkExporter exporter = createExporter();
+             OutputStream out = new BufferedOutputStream(new FileOutputStream(file))) {
+            exporter.writePng(out, scale);
+        }
+    }
+
+    private InkExporter createExporter() {
+        AtomicReference<ArrayList<Robot>> robots = new AtomicReference<>();
+        AtomicReference<Dimension> size = new AtomicReference<>();
+        try {
+            SwingUtilities.invokeAndWait(() -> {
+                purgeRemovedRobots();
+                robots.set(new ArrayList<>(robotList));
+                size.set(getSize());
+            });
+        } catch (InvocationTargetException | InterruptedException e) {
+            e.printStackTrace();
+        }
+        if (robots.get() == null) throw new IllegalStateException("The ink could not be exported.");
+        return new InkExporter(robots.get(), size.get().width, size.get().height);
     }
 
 }
@@ -0,0 +1,45 @@
+package org.jointheleague.graphical.robot;
+
+import org.jointheleague.graphical.robot.curves.Drawable;
+import org.jointheleague.graphical.robot.curves.Segment;
+
+import java.awt.*;
+
+/**
+ * The part of a drawable segment that a Robot has traced so far. The Robot
+ * only updates the time reached on each tick, and the corresponding
+ * sub-segment is computed when the trace is drawn, i.e., at most once per
+ * frame instead of on every tick.
+ */
+final class SegmentTrace implements Drawable {
+
+    private final Segment segment;
+    private volatile float time = 0F;
+
+    /**
+     * @param segment a segment that is also a {@link Drawable}
+     */
+    SegmentTrace(Segment segment) {
+        this.segment = segment;
+    }
+
+    /**
+     * @param time the time reached on the segment, normally between 0 and 1
+     */
+    void setTime(float time) {
+        this.time = time;
+    }
+
+    /**
+     * @return the traced part of the segment, as a drawable that does not change
+     */
+    Drawable toDrawable() {
+        final float t = time;
+        return (Drawable) (1F <= t ? segment : segment.subSegment(t));
+    }
+
+    @Override
+    public void draw(Graphics2D g2) {
+        ((Drawable) segment.subSegment(time)).draw(g2);
+    }
+}
@@ -0,0 +1,327 @@
+package org.jointheleague.graphical.robot;
+
+import java.awt.*;
+import java.awt.geom.AffineTransform;
+import java.awt.image.BufferedImage;
+import java.lang.ref.WeakReference;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.WeakHashMap;
+
+/**
+ * A robot image scaled to a given size, together with pre-rendered copies of
+ * it rotated by multiples of the angular resolution. Sprites are cached by
+ * source image and size, so that all Robots that use the same image share
+ * the same Sprites.
+ * <p>
+ * The image is scaled the first time the Sprite is drawn, so that, e.g., the
+ * small Sprite of a Robot is only scaled once the Robot is miniaturized. It
+ * is scaled into an image that is compatible with the screen, by averaging
+ * the pixels of the source directly, which looks like, but is much faster
+ * than, <code>getScaledInstance</code> with <code>SCALE_SMOOTH</code>. A
+ * rotated copy is rendered the first time it is needed, cropped to the
+ * pixels that show, and is then drawn with a plain, untransformed
+ * <code>drawImage</code>; the scaled image itself serves as the copy that
+ * is not rotated. Angles that are not a multiple of the angular resolution
+ * are drawn by rotating the scaled image. Sprites are drawn on the EDT only.
+ * </p>
+ * <p>
+ * A Sprite may also be composited into a {@link SpriteLayer}, from a copy of
+ * the pixels of its scaled or rotated image that is made the first time it
+ * is needed.
+ * </p>
+ * <p>
+ * The rotated copies of a Sprite and their pixels take at most
+ * {@value #MAX_ROTATED_BYTES} bytes; the least recently drawn copies are
+ * dropped to make room and are rendered again when needed. At an angular
+ * resolution of 1 degree, all the rotations of a small Sprite fit, whereas
+ * those of a large one would take about 18 MB, for as long as its image is
+ * used.
+ * </p>
+ */
+final class Sprite {
+
+    // the Sprites are held weakly, since each holds its source image, which is the key of its entry
+    private static final Map<BufferedImage, Map<Integer, WeakReference<Sprite>>> CACHE = new WeakHashMap<>();
+    private static volatile int angularResolution = 1; // in degrees
+    private static final long MAX_ROTATED_BYTES = 8L << 20; // of the rotated copies of a Sprite
+
+    private final int size;
+    private final BufferedImage source;
+    private BufferedImage scaledImage; // created on the first draw
+    private final int rotatedCenter;
+    private BufferedImage[] rotatedImages;
+    private SpriteLayer.Pixels scaledPixels; // created when first needed
+    private SpriteLayer.Pixels[] rotatedPixels; // of the rotated images, created when first needed
+    private int[] rotatedOffsets; // the x- and y-offsets of the rotated images, which are cropped
+    private int rotatedResolution;
+    private long[] rotatedUses; // when each rotated image was last drawn, in draws of this Sprite
+    private long numUses;
+    private long rotatedBytes; // taken by the rotated images and their pixels
+
+    private Sprite(BufferedImage source, int size) {
+        this.size = size;
+        this.source = source;
+        this.rotatedCenter = (int) Math.ceil(size * Math.sqrt(0.5)) + 1;
+    }
+
+    /**
+     * Gets the Sprite for an image at a given size, creating it if necessary. The
+     * Sprite is shared for as long as some Robot uses it.
+     *
+     * @param source the robot image
+     * @param size   the width and height of the Sprite
+     * @return the shared Sprite
+     */
+    static Sprite forImage(BufferedImage source, int size) {
+        synchronized (CACHE) {
+            final Map<Integer, WeakReference<Sprite>> sprites = CACHE.computeIfAbsent(source, k -> new HashMap<>());
+            final WeakReference<Sprite> ref = sprites.get(size);
+            Sprite sprite = ref == null ? null : ref.get();
+            if (sprite == null) {
+                sprite = new Sprite(source, size);
+                sprites.put(size, new WeakReference<>(sprite));
+            }
+            return sprite;
+        }
+    }
+
+    /**
+     * Sets the angular resolution of the pre-rendered rotations.
+     *
+     * @param degrees the angle between two consecutive pre-rendered rotations. Must divide 360.
+     */
+    static void setAngularResolution(int degrees) {
+        if (degrees <= 0 || 360 % degrees != 0) {
+            throw new IllegalArgumentException("The angular resolution must divide 360.");
+        }
+        angularResolution = degrees;
+    }
+
+    /**
+     * @return the width and height of the Sprite
+     */
+    int getSize() {
+        return size;
+    }
+
+    static int getAngularResolution() {
+        return angularResolution;
+    }
+
+    /**
+     * Gets the pre-rendered rotation of a Sprite that is turned by a given angle.
+     *
+     * @param resolution the angular resolution in degrees
+     * @param angle      the angle in degrees
+     * @return the index of the rotation, which is 0 for the image that is not rotated,
+     * or -1 if the angle is not a multiple of the angular resolution
+     */
+    static int getRotation(int resolution, double angle) {
+        final double buckets = angle / resolution;
+        final long bucket = Math.round(buckets);
+        if (Math.abs(buckets - bucket) >= 1E-9) return -1;
+        return (int) Math.floorMod(bucket, 360L / resolution);
+    }
+
+    /**
+     * Draws the sprite centered at the given position and rotated by the given angle.
+     *
+     * @param g2    the graphics context
+     * @param x     the x-coordinate of the center
+     * @param y     the y-coordinate of the center
+     * @param angle the angle in degrees
+     */
+    void draw(Graphics2D g2, float x, float y, double angle) {
+        final GraphicsConfiguration gc = g2.getDeviceConfiguration();
+        if (scaledImage == null) scaledImage = scale(gc);
+        final int resolution = angularResolution;
+        final int index = getRotation(resolution, angle);
+        if (index >= 0) {
+            if (index == 0) {
+                g2.drawImage(scaledImage, Math.round(x) - size / 2, Math.round(y) - size / 2, null);
+                return;
+            }
+            BufferedImage rotated = getRotatedImage(gc, resolution, index);
+            g2.drawImage(rotated, Math.round(x) - rotatedCenter + rotatedOffsets[2 * index],
+                    Math.round(y) - rotatedCenter + rotatedOffsets[2 * index + 1], null);
+        } else {
+            AffineTransform cached = g2.getTransform();
+            g2.translate(x, y);
+            g2.rotate(Math.toRadians(angle));
+            g2.drawImage(scaledImage, -size / 2, -size / 2, null);
+            g2.setTransform(cached);
+        }
+    }
+
+    /**
+     * Gets the pixels of a pre-rendered rotation of the sprite, e.g., to composite
+     * it into a {@link SpriteLayer}.
+     *
+     * @param gc         the configuration of the device the sprite is drawn on
+     * @param resolution the angular resolution in degrees
+     * @param index      the rotation, see {@link #getRotation(int, double)}
+     * @return the pixels, whose offsets are relative to the center of the sprite
+     */
+    SpriteLayer.Pixels getPixels(GraphicsConfiguration gc, int resolution, int index) {
+        if (scaledImage == null) scaledImage = scale(gc);
+        if (index == 0) {
+            if (scaledPixels == null) scaledPixels = new SpriteLayer.Pixels(scaledImage, -size / 2, -size / 2);
+            return scaledPixels;
+        }
+        final BufferedImage rotated = getRotatedImage(gc, resolution, index);
+        SpriteLayer.Pixels pixels = rotatedPixels[index];
+        if (pixels == null) {
+            pixels = new SpriteLayer.Pixels(rotated, rotatedOffsets[2 * index] - rotatedCenter,
+                    rotatedOffsets[2 * index + 1] - rotatedCenter);
+            rotatedPixels[index] = pixels;
+            rotatedBytes += pixels.bytes();
+            while (rotatedBytes > MAX_ROTATED_BYTES) {
+                evictLeastRecentlyUsed();
+            }
+        }
+        return pixels;
+    }
+
+    /**
+     * Scales the source image to the size of this Sprite by averaging, for each pixel of
+     * the result, the pixels of the source that it covers, weighted by how much of them
+     * it covers, with premultiplied alpha. This is what an area-averaging filter does,
+     * but without the overhead of an image producer, and reading only one row of the
+     * source at a time.
+     */
+    private BufferedImage scale(GraphicsConfiguration gc) {
+        final BufferedImage scaled = gc.createCompatibleImage(size, size, Transparency.TRANSLUCENT);
+        final BufferedImage image = source;
+        final int width = image.getWidth();
+        final int height = image.getHeight();
+        final double sx = (double) width / size; // the width of the source covered by a pixel
+        final double sy = (double) height / size;
+        final int[] row = new int[width];
+        final float[] acc = new float[4 * size]; // premultiplied ARGB of a row of the result
+        final int[] result = new int[size * size];
+        for (int y = 0; y < size; y++) {
+            Arrays.fill(acc, 0F);
+            final double top = y * sy;
+            final double bottom = (y + 1) * sy;
+            for (int i = (int) top; i < bottom && i < height; i++) {
+                final float wy = (float) ((Math.min(bottom, i + 1) - Math.max(top, i)) / sy);
+                image.getRGB(0, i, width, 1, row, 0, width);
+                for (int x = 0; x < size; x++) {
+                    final double left = x * sx;
+                    final double right = (x + 1) * sx;
+                    for (int j = (int) left; j < right && j < width; j++) {
+                        final float w = wy * (float) ((Math.min(right, j + 1) - Math.max(left, j)) / sx);
+                        final int argb = row[j];
+                        final float alpha = (argb >>> 24) * w;
+                        acc[4 * x] += alpha;
+                        acc[4 * x + 1] += (argb >> 16 & 0xff) * alpha;
+                        acc[4 * x + 2] += (argb >> 8 & 0xff) * alpha;
+                        acc[4 * x + 3] += (argb & 0xff) * alpha;
+                    }
+                }
+            }
+            for (int x = 0; x < size; x++) {
+                final float alpha = acc[4 * x];
+                if (alpha <= 0F) continue;
+                final int a = Math.min(255, Math.round(alpha));
+                final int r = Math.min(255, Math.round(acc[4 * x + 1] / alpha));
+                final int g = Math.min(255, Math.round(acc[4 * x + 2] / alpha));
+                final int b = Math.min(255, Math.round(acc[4 * x + 3] / alpha));
+                result[y * size + x] = a << 24 | r << 16 | g << 8 | b;
+            }
+        }
+        scaled.setRGB(0, 0, size, size, result, 0, size);
+        return scaled;
+    }
+
+    private BufferedImage getRotatedImage(GraphicsConfiguration gc, int resolution, int bucket) {
+        if (rotatedImages == null || rotatedResolution != resolution) {
+            rotatedImages = new BufferedImage[360 / resolution];
+            rotatedPixels = new SpriteLayer.Pixels[rotatedImages.length];
+            rotatedOffsets = new int[2 * rotatedImages.length];
+            rotatedUses = new long[rotatedImages.length];
+            rotatedBytes = 0L;
+            rotatedResolution = resolution;
+        }
+        rotatedUses[bucket] = ++numUses;
+        BufferedImage rotated = rotatedImages[bucket];
+        if (rotated == null) {
+            int side = 2 * rotatedCenter;
+            rotated = gc.createCompatibleImage(side, side, Transparency.TRANSLUCENT);
+            Graphics2D g2 = rotated.createGraphics();
+            g2.setRenderingHint(RenderingHints.KEY_ANTIALIASING, RenderingHints.VALUE_ANTIALIAS_ON);
+            g2.setRenderingHint(RenderingHints.KEY_INTERPOLATION, RenderingHints.VALUE_INTERPOLATION_BILINEAR);
+            g2.translate(rotatedCenter, rotatedCenter);
+            g2.rotate(Math.toRadians(bucket * resolution));
+            g2.drawImage(scaledImage, -size / 2, -size / 2, null);
+            g2.dispose();
+            rotated = crop(gc, rotated, 2 * bucket);
+            rotatedImages[bucket] = rotated;
+            rotatedBytes += bytes(rotated);
+            while (rotatedBytes > MAX_ROTATED_BYTES) {
+                evictLeastRecentlyUsed();
+            }
+        }
+        return rotated;
+    }
+
+    /**
+     * Drops the rotated image that was drawn least recently, and its pixels. The rotated
+     * image being drawn was drawn most recently, so that it is never dropped.
+     */
+    private void evictLeastRecentlyUsed() {
+        int lru = -1;
+        for (int i = 0; i < rotatedImages.length; i++) {
+            if (rotatedImages[i] != null && (lru < 0 || rotatedUses[i] < rotatedUses[lru])) lru = i;
+        }
+        rotatedBytes -= bytes(rotatedImages[lru]);
+        rotatedImages[lru] = null;
+        if (rotatedPixels[lru] != null) {
+            rotatedBytes -= rotatedPixels[lru].bytes();
+            rotatedPixels[lru] = null;
+        }
+    }
+
+    private static long bytes(BufferedImage image) {
+        return 4L * image.getWidth() * image.getHeight();
+    }
+
+    /**
+     * Crops a rotated image to the bounds of its pixels that are not fully transparent,
+     * and records the offset of the cropped image. A rotated image has transparent
+     * corners, and blending them into the window would take as long as blending the
+     * pixels that show, which matters when many Robots are drawn.
+     */
+    private BufferedImage crop(GraphicsConfiguration gc, BufferedImage rotated, int offsetIndex) {
+        final int side = rotated.getWidth();
+        final int[] pixels = rotated.getRGB(0, 0, side, side, null, 0, side);
+        int minX = side;
+        int minY = side;
+        int maxX = -1;
+        int maxY = -1;
+        for (int y = 0; y < side; y++) {
+            for (int x = 0; x < side; x++) {
+                if (pixels[y * side + x] >>> 24 != 0) {
+                    minX = Math.min(minX, x);
+                    maxX = Math.max(maxX, x);
+                    minY = Math.min(minY, y);
+                    maxY = Math.max(maxY, y);
+                }
+            }
+        }
+        if (maxX < 0) { // nothing shows
+            minX = minY = maxX = maxY = 0;
+        }
+        rotatedOffsets[offsetIndex] = minX;
+        rotatedOffsets[offsetIndex + 1] = minY;
+        final BufferedImage cropped = gc.createCompatibleImage(maxX - minX + 1, maxY - minY + 1,
+                Transparency.TRANSLUCENT);
+        Graphics2D g2 = cropped.createGraphics();
+        g2.setComposite(AlphaComposite.Src);
+        g2.drawImage(rotated, -minX, -minY, null);
+        g2.dispose();
+        return cropped;
+    }
+}
@@ -0,0 +1,338 @@
+package org.jointheleague.graphical.robot;
+
+import java.awt.*;
+import java.awt.image.BufferedImage;
+import java.awt.image.DataBufferInt;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.ForkJoinTask;
+import java.util.concurrent.RecursiveAction;
+
+/**
+ * Draws the Robots of a {@link RobotWindow}. In a dense swarm, most of the
+ * pixels of a sprite are hidden by the sprites drawn after it, yet blending
+ * them one <code>drawImage</code> at a time costs as much as blending the
+ * pixels that show. So every run of consecutive Robots that draw nothing but
+ * a pre-rendered sprite, and whose sprites would cover the area painted at
+ * least {@value #MIN_OVERDRAW} times over, is composited into a transparent
+ * layer front to back, i.e., starting with the Robot drawn last,
+ * and each pixel of the layer is only blended until it is opaque. The layer
+ * is then drawn in a single <code>drawImage</code> call, so that painting
+ * takes time in proportion to the area of the window covered by the swarm,
+ * rather than to the number of Robots. Sparser runs are drawn one sprite at
+ * a time, which is faster when few pixels are hidden.
+ * <p>
+ * The layer is split into horizontal bands that are composited in parallel,
+ * one band per available processor, so that a dense swarm does not keep the
+ * EDT busy compositing alone while the other processors idle.
+ * </p>
+ * <p>
+ * The Robots that draw ink, a pen or sparkles, or that are turned by an angle
+ * that is not pre-rendered, are drawn in turn with {@link Robot#draw(Graphics2D)},
+ * so that every Robot is drawn over the Robots that precede it, just as if all
+ * of them were drawn in turn. This class is used on the EDT only, except for
+ * the bands that it composites in parallel.
+ * </p>
+ */
+final class SpriteLayer {
+
+    // how many times over the sprites of a run must cover the area painted to be composited in the layer
+    private static final int MIN_OVERDRAW = 4;
+    private static final int MIN_BAND_HEIGHT = 32;
+
+    private int width;
+    private int height;
+    private int words; // the number of words in a row of the opaque mask
+    private int[] pixels; // premultiplied ARGB
+    private long[] opaque; // one bit per pixel of the layer, set when the pixel is opaque
+    private BufferedImage image; // backed by pixels
+    // what the Robots draw, reused between frames; a null sprite means that the Robot draws something else
+    private Sprite[] sprites = new Sprite[16];
+    private double[] poses = new double[3 * 16]; // the x- and y-coordinates and the angle of each Robot
+    private int[] rotations = new int[16];
+    // the pixels of the sprites of the run being composited, and the positions of their top left corners
+    private Pixels[] runPixels = new Pixels[16];
+    private int[] runLefts = new int[16];
+    private int[] runTops = new int[16];
+
+    /**
+     * Draws the Robots in order.
+     *
+     * @param g2     the graphics context of the window
+     * @param robots the Robots
+     * @param width  the width of the window
+     * @param height the height of the window
+     */
+    void paint(Graphics2D g2, List<Robot> robots, int width, int height) {
+        final int n = robots.size();
+        if (sprites.length < n) {
+            sprites = new Sprite[Math.max(n, 2 * sprites.length)];
+            poses = new double[3 * sprites.length];
+            rotations = new int[sprites.length];
+        }
+        final int resolution = Sprite.getAngularResolution();
+        for (int i = 0; i < n; i++) {
+            final Sprite sprite = robots.get(i).getBareSprite(poses, 3 * i);
+            sprites[i] = sprite;
+            rotations[i] = sprite == null ? -1 : Sprite.getRotation(resolution, poses[3 * i + 2]);
+        }
+        final Rectangle clip = g2.getClipBounds();
+        final long paintedArea = clip == null ? (long) width * height
+                : (long) Math.min(width, clip.width) * Math.min(height, clip.height);
+        int i = 0;
+        while (i < n) {
+            int end = i;
+            long spriteArea = 0L;
+            while (end < n && rotations[end] >= 0) {
+                final int size = sprites[end].getSize();
+                if (clip == null || reaches(clip, poses[3 * end], poses[3 * end + 1], size)) {
+                    spriteArea += (long) size * size;
+                }
+                end++;
+            }
+            if (spriteArea >= MIN_OVERDRAW * paintedArea && width > 0 && height > 0) {
+                composite(g2, resolution, i, end, clip, width, height);
+            } else {
+                for (int j = i; j < end; j++) {
+                    sprites[j].draw(g2, (float) poses[3 * j], (float) poses[3 * j + 1], poses[3 * j + 2]);
+                }
+            }
+            if (end < n) {
+                if (sprites[end] != null) {
+                    sprites[end].draw(g2, (float) poses[3 * end], (float) poses[3 * end + 1], poses[3 * end + 2]);
+                } else {
+                    robots.get(end).draw(g2);
+                }
+            }
+            i = end + 1;
+        }
+        Arrays.fill(sprites, 0, n, null);
+    }
+
+    /**
+     * @return true if a sprite centered at the given position may reach into the clip
+     */
+    private static boolean reaches(Rectangle clip, double x, double y, int size) {
+        final double radius = size; // more than half the diagonal of the sprite
+        return x + radius > clip.x && x - radius < clip.x + clip.width
+                && y + radius > clip.y && y - radius < clip.y + clip.height;
+    }
+
+    /**
+     * Composites the sprites of a run of Robots into the layer, draws the layer, and clears it.
+     */
+    private void composite(Graphics2D g2, int resolution, int from, int to, Rectangle clip, int width, int height) {
+        resize(width, height);
+        final int n = to - from;
+        if (runPixels.length < n) {
+            runPixels = new Pixels[Math.max(n, 2 * runPixels.length)];
+            runLefts = new int[runPixels.length];
+            runTops = new int[runPixels.length];
+        }
+        // the Sprites create their pixels on the EDT, before any band is composited
+        final GraphicsConfiguration gc = g2.getDeviceConfiguration();
+        for (int j = 0; j < n; j++) {
+            final Pixels p = sprites[from + j].getPixels(gc, resolution, rotations[from + j]);
+            runPixels[j] = p;
+            runLefts[j] = Math.round((float) poses[3 * (from + j)]) + p.dx;
+            runTops[j] = Math.round((float) poses[3 * (from + j) + 1]) + p.dy;
+        }
+
+        final int x0 = clip == null ? 0 : Math.max(0, clip.x);
+        final int y0 = clip == null ? 0 : Math.max(0, clip.y);
+        final int x1 = clip == null ? width : Math.min(width, clip.x + clip.width);
+        final int y1 = clip == null ? height : Math.min(height, clip.y + clip.height);
+        final int numBands = Math.max(1, Math.min(Runtime.getRuntime().availableProcessors(),
+                (y1 - y0) / MIN_BAND_HEIGHT));
+        final Band[] bands = new Band[numBands];
+        for (int b = 0; b < numBands; b++) {
+            bands[b] = new Band(n, x0, x1, y0 + (y1 - y0) * b / numBands, y0 + (y1 - y0) * (b + 1) / numBands);
+        }
+        if (numBands == 1) {
+            bands[0].compute();
+        } else {
+            ForkJoinTask.invokeAll(bands); // composites one band on the EDT, and waits for the others
+        }
+        Arrays.fill(runPixels, 0, n, null);
+
+        int minX = Integer.MAX_VALUE;
+        int minY = Integer.MAX_VALUE;
+        int maxX = Integer.MIN_VALUE;
+        int maxY = Integer.MIN_VALUE;
+        for (Band band : bands) {
+            if (band.minX >= band.maxX) continue;
+            minX = Math.min(minX, band.minX);
+            minY = Math.min(minY, band.minY);
+            maxX = Math.max(maxX, band.maxX);
+            maxY = Math.max(maxY, band.maxY);
+        }
+        if (minX >= maxX) return;
+        g2.drawImage(image, minX, minY, maxX, maxY, minX, minY, maxX, maxY, null);
+        final int word0 = minX >>> 6;
+        final int word1 = ((maxX - 1) >>> 6) + 1;
+        for (int y = minY; y < maxY; y++) {
+            Arrays.fill(pixels, y * width + minX, y * width + maxX, 0);
+            Arrays.fill(opaque, y * words + word0, y * words + word1, 0L);
+        }
+    }
+
+    private void resize(int width, int height) {
+        if (image != null && this.width == width && this.height == height) return;
+        this.width = width;
+        this.height = height;
+        words = (width + 63) >>> 6;
+        opaque = new long[words * height];
+        image = new BufferedImage(width, height, BufferedImage.TYPE_INT_ARGB_PRE);
+        pixels = ((DataBufferInt) image.getRaster().getDataBuffer()).getData();
+    }
+
+    /**
+     * Blends a premultiplied source pixel under a premultiplied destination pixel, which
+     * yields the source pixel where the destination is transparent. Two channels are
+     * scaled by the transparency of the destination in each multiplication, and divided
+     * by 255 with rounding, without dividing. No channel of the result exceeds its alpha,
+     * since neither pixel's channels do, so the channels do not carry into each other.
+     */
+    private static int under(int d, int s) {
+        final int t = 0xff - (d >>> 24); // the transparency of the destination
+        if (t == 0xff) return s;
+        int rb = (s & 0xff00ff) * t + 0x800080;
+        rb = (rb + (rb >>> 8 & 0xff00ff)) >>> 8 & 0xff00ff;
+        int ag = (s >>> 8 & 0xff00ff) * t + 0x800080;
+        ag = (ag + (ag >>> 8 & 0xff00ff)) & 0xff00ff00;
+        return d + (ag | rb);
+    }
+
+    /**
+     * The rows of the layer in which one thread composites the sprites of a run.
+     * No two bands share a pixel of the layer, or a word of its opaque mask.
+     */
+    @SuppressWarnings("serial")
+    private final class Band extends RecursiveAction {
+
+        private final int numSprites;
+        private final int clipX0;
+        private final int clipX1;
+        private final int clipY0;
+        private final int clipY1;
+        // the area of the band that is not transparent
+        int minX = Integer.MAX_VALUE;
+        int minY = Integer.MAX_VALUE;
+        int maxX = Integer.MIN_VALUE;
+        int maxY = Integer.MIN_VALUE;
+
+        Band(int numSprites, int clipX0, int clipX1, int clipY0, int clipY1) {
+            this.numSprites = numSprites;
+            this.clipX0 = clipX0;
+            this.clipX1 = clipX1;
+            this.clipY0 = clipY0;
+            this.clipY1 = clipY1;
+        }
+
+        @Override
+        protected void compute() {
+            for (int j = numSprites - 1; j >= 0; j--) {
+                composite(runPixels[j], runLefts[j], runTops[j]);
+            }
+        }
+
+        /**
+         * Composites a sprite under the sprites composited so far.
+         *
+         * @param sprite the pixels of the sprite
+         * @param left   the x-coordinate in the layer of the left edge of the sprite
+         * @param top    the y-coordinate in the layer of the top edge of the sprite
+         */
+        private void composite(Pixels sprite, int left, int top) {
+            final int y0 = Math.max(top, clipY0);
+            final int y1 = Math.min(top + sprite.height, clipY1);
+            if (y0 >= y1) return;
+            final int[] src = sprite.argb;
+            final int[] spans = sprite.spans;
+            final int w = sprite.width;
+            final int[] pixels = SpriteLayer.this.pixels;
+            final long[] opaque = SpriteLayer.this.opaque;
+            for (int y = y0; y < y1; y++) {
+                final int r = y - top;
+                final int x0 = Math.max(left + spans[2 * r], clipX0);
+                final int x1 = Math.min(left + spans[2 * r + 1], clipX1);
+                if (x0 >= x1) continue;
+                if (x0 < minX) minX = x0;
+                if (x1 > maxX) maxX = x1;
+                if (y < minY) minY = y;
+                if (y >= maxY) maxY = y + 1;
+                final int row = y * width;
+                final int maskRow = y * words;
+                final int srcRow = r * w - left;
+                // visit the pixels that are not yet opaque, a word of the mask at a time
+                for (int word = x0 >>> 6; word <= (x1 - 1) >>> 6; word++) {
+                    long visible = ~opaque[maskRow + word];
+                    if (word == x0 >>> 6) visible &= -1L << (x0 & 63);
+                    if (word == (x1 - 1) >>> 6) visible &= -1L >>> (63 - ((x1 - 1) & 63));
+                    long covered = 0L;
+                    while (visible != 0L) {
+                        final int bit = Long.numberOfTrailingZeros(visible);
+                        visible &= visible - 1;
+                        final int x = (word << 6) | bit;
+                        final int s = src[srcRow + x];
+                        if (s == 0) continue;
+                        final int result = under(pixels[row + x], s);
+                        pixels[row + x] = result;
+                        covered |= (long) ((result >>> 24) + 1 >>> 8) << bit; // without branching
+                    }
+                    opaque[maskRow + word] |= covered;
+                }
+            }
+        }
+    }
+
+    /**
+     * The pixels of a sprite, premultiplied, together with the span of the pixels
+     * of each row that are not fully transparent, so that the transparent margins
+     * of a rotated sprite are not visited.
+     */
+    static final class Pixels {
+
+        final int[] argb;
+        final int[] spans; // the first and the end of the span of each row
+        final int width;
+        final int height;
+        final int dx; // the offset of the left edge from the center of the sprite
+        final int dy; // the offset of the top edge from the center of the sprite
+
+        Pixels(BufferedImage image, int dx, int dy) {
+            this.dx = dx;
+            this.dy = dy;
+            width = image.getWidth();
+            height = image.getHeight();
+            argb = image.getRGB(0, 0, width, height, null, 0, width);
+            spans = new int[2 * height];
+            for (int y = 0; y < height; y++) {
+                int first = width;
+                int end = 0;
+                for (int x = 0; x < width; x++) {
+                    final int p = argb[y * width + x];
+                    final int a = p >>> 24;
+                    if (a == 0) {
+                        argb[y * width + x] = 0;
+                        continue;
+                    }
+                    if (first == width) first = x;
+                    end = x + 1;
+                    if (a < 0xff) {
+                        argb[y * width + x] = a << 24
+                                | ((p >> 16 & 0xff) * a + 0x7f) / 0xff << 16
+                                | ((p >> 8 & 0xff) * a + 0x7f) / 0xff << 8
+                                | ((p & 0xff) * a + 0x7f) / 0xff;
+                    }
+                }
+                spans[2 * y] = first;
+                spans[2 * y + 1] = end;
+            }
+        }
+
+        long bytes() {
+            return 4L * argb.length + 4L * spans.length;
+        }
+    }
+}
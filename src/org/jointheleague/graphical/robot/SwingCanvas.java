@@ -0,0 +1,45 @@
+package org.jointheleague.graphical.robot;
+
+import javax.swing.*;
+import java.awt.*;
+
+/**
+ * Shows a {@link RobotWindow} in a {@link JFrame} on the screen.
+ */
+final class SwingCanvas implements RobotCanvas {
+
+    private final RobotWindow window;
+    private JFrame frame;
+
+    SwingCanvas(RobotWindow window) {
+        this.window = window;
+    }
+
+    @Override
+    public void build(int width, int height) {
+        frame = new JFrame();
+        window.setPreferredSize(new Dimension(width, height));
+        frame.add(window);
+        // frame.setSize(Toolkit.getDefaultToolkit().getScreenSize());
+        frame.setDefaultCloseOperation(WindowConstants.EXIT_ON_CLOSE);
+        frame.setResizable(true);
+        frame.pack();
+        frame.setVisible(true);
+        window.setFocusable(true);
+    }
+
+    @Override
+    public void setSize(int width, int height) {
+        window.setPreferredSize(new Dimension(width, height));
+        frame.pack();
+    }
+
+    @Override
+    public void repaint(Rectangle area) {
+        if (area == null) {
+            window.repaint();
+        } else {
+            window.repaint(area);
+        }
+    }
+}
@@ -0,0 +1,113 @@
+package org.jointheleague.graphical.robot.curves;
+
+import java.util.Arrays;
+
+/**
+ * A table that maps the distance travelled along a curved segment to the time
+ * at which that distance is reached. The table is built once per segment by
+ * adaptive subdivision: the length of an interval of time is estimated by
+ * Gauss-Legendre quadrature of the segment's speed, and the interval is split
+ * as long as the estimate differs noticeably from the sum of the estimates for
+ * its two halves. More samples are therefore taken in tight bends than in flat
+ * parts. Looking up a time does not allocate.
+ */
+final class ArcLengthTable {
+
+    private static final float TOLERANCE = 0.01F; // in pixels
+    private static final float MAX_SAMPLE_DISTANCE = 5F; // in pixels, so that interpolating between samples is accurate
+    private static final int MIN_DEPTH = 3;
+    private static final int MAX_DEPTH = 16;
+
+    private float[] times = new float[32];
+    private float[] lengths = new float[32]; // the distance travelled at each of the times
+    private int count = 0;
+
+    // 3-point Gauss-Legendre quadrature on [-1, 1]
+    private static final float NODE = (float) Math.sqrt(0.6);
+    private static final float OUTER_WEIGHT = 5F / 9F;
+    private static final float INNER_WEIGHT = 8F / 9F;
+
+    /**
+     * @param segment the segment, which must not be modified afterwards
+     */
+    ArcLengthTable(Segment segment) {
+        final float[] point = new float[4];
+        append(0F, 0F);
+        subdivide(segment, 0F, 1F, length(segment, 0F, 1F, point), 0, point);
+        times = Arrays.copyOf(times, count);
+        lengths = Arrays.copyOf(lengths, count);
+    }
+
+    private void subdivide(Segment segment, float t0, float t1, float length, int depth, float[] point) {
+        final float tm = (t0 + t1) / 2;
+        final float first = length(segment, t0, tm, point);
+        final float second = length(segment, tm, t1, point);
+        if (depth >= MAX_DEPTH || depth >= MIN_DEPTH && Math.abs(first + second - length) <= TOLERANCE
+                && length <= 2 * MAX_SAMPLE_DISTANCE) {
+            final float start = lengths[count - 1];
+            append(tm, start + first);
+            append(t1, start + first + second);
+        } else {
+            subdivide(segment, t0, tm, first, depth + 1, point);
+            subdivide(segment, tm, t1, second, depth + 1, point);
+        }
+    }
+
+    /**
+     * @return an estimate of the length of the segment between times t0 and t1
+     */
+    private static float length(Segment segment, float t0, float t1, float[] point) {
+        final float half = (t1 - t0) / 2;
+        final float mid = (t0 + t1) / 2;
+        return half * (OUTER_WEIGHT * speed(segment, mid - half * NODE, point)
+                + INNER_WEIGHT * speed(segment, mid, point)
+                + OUTER_WEIGHT * speed(segment, mid + half * NODE, point));
+    }
+
+    private static float speed(Segment segment, float t, float[] point) {
+        segment.evaluate(t, point);
+        return (float) Math.sqrt(point[2] * point[2] + point[3] * point[3]);
+    }
+
+    private void append(float time, float length) {
+        if (count == times.length) {
+            times = Arrays.copyOf(times, 2 * count);
+            lengths = Arrays.copyOf(lengths, 2 * count);
+        }
+        times[count] = time;
+        lengths[count] = length;
+        count++;
+    }
+
+    /**
+     * @return the length of the segment
+     */
+    float getLength() {
+        return lengths[count - 1];
+    }
+
+    /**
+     * Gets the time at which a given distance has been travelled along the segment.
+     *
+     * @param distance the distance from the start of the segment
+     * @return the time, which is 0 if the distance is not positive and 1 if the
+     * distance is at least the length of the segment
+     */
+    float getTime(float distance) {
+        if (distance <= 0F) return 0F;
+        if (distance >= getLength()) return 1F;
+        // find the last sample at or before the distance
+        int low = 0;
+        int high = count - 1;
+        while (high - low > 1) {
+            final int mid = (low + high) >>> 1;
+            if (lengths[mid] <= distance) {
+                low = mid;
+            } else {
+                high = mid;
+            }
+        }
+        final float fraction = (distance - lengths[low]) / (lengths[high] - lengths[low]);
+        return times[low] + fraction * (times[high] - times[low]);
+    }
+}
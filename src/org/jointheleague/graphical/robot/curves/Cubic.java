@@ -5,6 +5,7 @@ import org.jointheleague.graphical.robot.Robot;
 import java.awt.*;
 import java.awt.geom.CubicCurve2D;
 import java.awt.geom.Path2D;
+import java.util.Arrays;
 
 final public class Cubic implements Drawable, Segment {
 
@@ -15,6 +16,7 @@ final public class Cubic implements Drawable, Segment {
     private final Color color;
     private final Line line;
     private final Quad quad;
+    private volatile ArcLengthTable arcLengthTable; // built when first needed
 
     /**
      * Constructor
@@ -38,7 +40,7 @@ final public class Cubic implements Drawable, Segment {
 
     @Override
     public void draw(Graphics2D g2) {
-        g2.setStroke(new BasicStroke(lineSize));
+        g2.setStroke(StrokeCache.get(lineSize));
         g2.setColor(color);
         CubicCurve2D.Float cubic = new CubicCurve2D.Float(
                 startX, startY,
@@ -48,6 +50,42 @@ final public class Cubic implements Drawable, Segment {
         g2.draw(cubic);
     }
 
+    /**
+     * @return the x-coordinate of the segment's starting point
+     */
+    public float getStartX() {
+        return startX;
+    }
+
+    /**
+     * @return the y-coordinate of the segment's starting point
+     */
+    public float getStartY() {
+        return startY;
+    }
+
+    /**
+     * @return a new array of length 6 that contains the x- and y-coordinates of
+     * the segment's control points
+     */
+    public float[] getCtrlPoints() {
+        return Arrays.copyOf(ctrlPoints, 6);
+    }
+
+    /**
+     * @return the line width used to draw the segment
+     */
+    public int getLineSize() {
+        return lineSize;
+    }
+
+    /**
+     * @return the color used to draw the segment
+     */
+    public Color getColor() {
+        return color;
+    }
+
     @Override
     public Segment subSegment(float t) {
         Robot.Pos pos1 = line.getPos(t);
@@ -76,6 +114,30 @@ final public class Cubic implements Drawable, Segment {
                 c0 * startY + c1 * ctrlPoints[1] + c2 * ctrlPoints[3] + c3 * ctrlPoints[5]);
     }
 
+    @Override
+    public void evaluate(float t, float[] result) {
+        if (t <= 0F) {
+            t = 0F;
+        } else if (1F <= t) {
+            t = 1F;
+        }
+        final float u = 1F - t;
+        final float uu = u * u;
+        final float tt = t * t;
+        final float c0 = uu * u;
+        final float c1 = 3 * uu * t;
+        final float c2 = 3 * u * tt;
+        final float c3 = t * tt;
+        result[0] = c0 * startX + c1 * ctrlPoints[0] + c2 * ctrlPoints[2] + c3 * ctrlPoints[4];
+        result[1] = c0 * startY + c1 * ctrlPoints[1] + c2 * ctrlPoints[3] + c3 * ctrlPoints[5];
+        // B'(t) = 3 (u^2 (P1 - P0) + 2 u t (P2 - P1) + t^2 (P3 - P2))
+        final float d0 = 3 * uu;
+        final float d1 = 6 * u * t;
+        final float d2 = 3 * tt;
+        result[2] = d0 * (ctrlPoints[0] - startX) + d1 * (ctrlPoints[2] - ctrlPoints[0]) + d2 * (ctrlPoints[4] - ctrlPoints[2]);
+        result[3] = d0 * (ctrlPoints[1] - startY) + d1 * (ctrlPoints[3] - ctrlPoints[1]) + d2 * (ctrlPoints[5] - ctrlPoints[3]);
+    }
+
     @Override
     public double getStartAngle() {
         if (ctrlPoints[0] == startX && ctrlPoints[1] == startY) return Double.NaN;
@@ -92,18 +154,51 @@ final public class Cubic implements Drawable, Segment {
     public double getAngle(float time) {
         if (time <= 0F) return getStartAngle();
         if (1F <= time) return getEndAngle();
-        return subSegment(time).getEndAngle();
+        // the direction of B'(time)
+        final float u = 1F - time;
+        final float uu = u * u;
+        final float ut2 = 2 * u * time;
+        final float tt = time * time;
+        final float dx = uu * (ctrlPoints[0] - startX) + ut2 * (ctrlPoints[2] - ctrlPoints[0]) + tt * (ctrlPoints[4] - ctrlPoints[2]);
+        final float dy = uu * (ctrlPoints[1] - startY) + ut2 * (ctrlPoints[3] - ctrlPoints[1]) + tt * (ctrlPoints[5] - ctrlPoints[3]);
+        if (dx == 0F && dy == 0F) return Double.NaN;
+        return Math.atan2(dx, -dy);
+    }
+
+    @Override
+    public double getCurvature(float time) {
+        final float t = Math.min(Math.max(0F, time), 1F);
+        final float u = 1F - t;
+        final float d0 = 3 * u * u;
+        final float d1 = 6 * u * t;
+        final float d2 = 3 * t * t;
+        final double dx = d0 * (ctrlPoints[0] - startX) + d1 * (ctrlPoints[2] - ctrlPoints[0]) + d2 * (ctrlPoints[4] - ctrlPoints[2]);
+        final double dy = d0 * (ctrlPoints[1] - startY) + d1 * (ctrlPoints[3] - ctrlPoints[1]) + d2 * (ctrlPoints[5] - ctrlPoints[3]);
+        // B''(t) = 6 (u (P2 - 2 P1 + P0) + t (P3 - 2 P2 + P1))
+        final double ddx = 6 * (u * (ctrlPoints[2] - 2 * ctrlPoints[0] + startX) + t * (ctrlPoints[4] - 2 * ctrlPoints[2] + ctrlPoints[0]));
+        final double ddy = 6 * (u * (ctrlPoints[3] - 2 * ctrlPoints[1] + startY) + t * (ctrlPoints[5] - 2 * ctrlPoints[3] + ctrlPoints[1]));
+        final double speedSquared = dx * dx + dy * dy;
+        if (speedSquared == 0.0) return Double.NaN;
+        return (dx * ddy - dy * ddx) / (speedSquared * Math.sqrt(speedSquared));
     }
 
     @Override
     public float getSize() {
-        double a = ctrlPoints[0] - startX;
-        double b = ctrlPoints[1] - startY;
-        double c = ctrlPoints[2] - ctrlPoints[0];
-        double d = ctrlPoints[3] - ctrlPoints[1];
-        double e = ctrlPoints[4] - ctrlPoints[2];
-        double f = ctrlPoints[5] - ctrlPoints[3];
-        return (float) (Math.sqrt(a * a + b * b) + Math.sqrt(c * c + d * d) + Math.sqrt(e * e + f * f));
+        return getArcLengthTable().getLength();
+    }
+
+    @Override
+    public float getTime(float distance) {
+        return getArcLengthTable().getTime(distance);
+    }
+
+    private ArcLengthTable getArcLengthTable() {
+        ArcLengthTable table = arcLengthTable;
+        if (table == null) {
+            table = new ArcLengthTable(this);
+            arcLengthTable = table;
+        }
+        return table;
     }
 
     @Override
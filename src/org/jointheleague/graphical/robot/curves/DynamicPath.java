@@ -3,24 +3,70 @@ package org.jointheleague.graphical.robot.curves;
 import org.jointheleague.graphical.robot.Robot;
 
 import java.awt.*;
+import java.awt.geom.AffineTransform;
 import java.awt.geom.Path2D;
 import java.awt.geom.PathIterator;
+import java.awt.geom.Rectangle2D;
+import java.awt.image.BufferedImage;
 
 /**
  * A Path that is followed by a Robot. Only the part of the path from
  * the path's start to the robot's current position is drawn.
+ * <p>
+ * While the Robot follows a long path, the part that has been traced is kept in a
+ * raster that is brought up to date with the segments completed since the
+ * previous frame, so that each frame only renders what is new instead of the
+ * whole path. Short paths are simply drawn as shapes. In fill mode, the raster holds the subpaths that have been
+ * closed, which are filled together so that their winding is correct; the
+ * subpath in progress is filled on top of them. Once the path is complete, it
+ * is drawn exactly as a single shape. The raster is kept in device space,
+ * so that it is as sharp as the path under a scaled transform, e.g., on a
+ * HiDPI screen or when the ink is exported at a larger scale, and it is drawn
+ * again from the whole traced path whenever the transform changes. The path
+ * may look slightly different from the complete path until the Robot reaches
+ * its end, e.g., at the joins between segments.
+ * </p>
  */
 final public class DynamicPath implements Drawable {
 
+    private static final int RASTER_MARGIN = 64; // in pixels, added when the raster grows
+    private static final int RASTER_THRESHOLD = 64; // the number of segments completed before a raster is used
+
     private Segment currentSegment;
-    private Path2D currentPath = new Path2D.Float();
+    private float segmentStartX;
+    private float segmentStartY;
+    private final Rectangle2D segmentBounds = new Rectangle2D.Float(); // contains the current segment
     private float time = 0F;
+    private double distance = 0.0; // travelled along the current segment
     private final PathIterator pathIterator;
     private Robot.Pos startingPoint;
     private final int lineSize;
     private final Color color;
     private final Robot robot;
     private final boolean fill;
+    private final BasicStroke stroke;
+    private final float[] point = new float[4]; // the position and derivative at the current time
+    // the position and derivative at the end of the piece traced by the last step, followed by those at its start
+    private final float[] step = new float[8];
+    private float stepDuration = 0F; // the time it took to trace the piece
+
+    // The following fields are guarded by this, since the path is traced by the Robot's thread
+    // and drawn by the EDT.
+    private final Path2D currentPath = new Path2D.Float(); // the segments completed so far
+    private final Rectangle2D tracedBounds = new Rectangle2D.Float(); // contains currentPath and the first segment
+    private boolean complete = false;
+    private int numSegments = 0; // the number of segments completed
+    // stroke mode: the segments completed, but not yet drawn in the raster
+    private final Path2D pendingPath = new Path2D.Float();
+    // fill mode: the subpaths that have been closed, and the subpath in progress
+    private final Path2D closedSubpaths = new Path2D.Float();
+    private Path2D openSubpath = new Path2D.Float();
+    private boolean openSubpathEmpty = true; // true if the subpath in progress has no segments but a move
+    private boolean rasterStale = false;
+    private BufferedImage raster;
+    private int rasterX;
+    private int rasterY;
+    private AffineTransform rasterTransform; // of the graphics context the raster was drawn for
 
     /**
      * Constructor
@@ -37,8 +83,11 @@ final public class DynamicPath implements Drawable {
         this.color = color;
         this.robot = robot;
         this.fill = fill;
+        this.stroke = StrokeCache.get(lineSize);
         currentSegment = getCurrentSegment();
         assert currentSegment != null;
+        currentSegment.evaluate(0F, point);
+        tracedBounds.setRect(segmentBounds);
         double startAngle = currentSegment.getStartAngle();
         if (!Double.isNaN(startAngle)) robot.turnTo(Math.toDegrees(startAngle));
     }
@@ -49,6 +98,13 @@ final public class DynamicPath implements Drawable {
         float x = robot.getX();
         float y = robot.getY();
         int type = pathIterator.currentSegment(coordinates);
+        segmentStartX = x;
+        segmentStartY = y;
+        segmentBounds.setRect(x, y, 0, 0);
+        final int numCoordinates = type == PathIterator.SEG_CUBICTO ? 6 : type == PathIterator.SEG_QUADTO ? 4 : 2;
+        for (int i = 0; type != PathIterator.SEG_CLOSE && i < numCoordinates; i += 2) {
+            segmentBounds.add(coordinates[i], coordinates[i + 1]);
+        }
         switch (type) {
             case PathIterator.SEG_MOVETO:
                 startingPoint = new Robot.Pos(coordinates[0], coordinates[1]);
@@ -62,6 +118,7 @@ final public class DynamicPath implements Drawable {
             case PathIterator.SEG_CLOSE:
                 coordinates[0] = startingPoint.getX();
                 coordinates[1] = startingPoint.getY();
+                segmentBounds.add(coordinates[0], coordinates[1]);
                 return new Close(x, y, coordinates, 0, null);
             default:
                 return null;
@@ -69,30 +126,102 @@ final public class DynamicPath implements Drawable {
     }
 
     /**
-     * Moves the robot forward on the path by an increment that
-     * is proportional to the speed.
+     * Moves the robot forward on the path by a distance equal to the speed,
+     * measured along the path.
      *
-     * @param speed a double value that specifies the increment
+     * @param speed a double value that specifies the distance
      */
     public void incrementTime(double speed) {
-        time += speed / currentSegment.getSize();
-        Robot.Pos pos = currentSegment.getPos(time);
-        robot.setPos(pos.getX(), pos.getY());
-        double angle = currentSegment.getAngle(time);
-        if (!Double.isNaN(angle)) robot.setAngle(Math.toDegrees(angle));
-        if (time >= 1F) {
-            currentSegment.addTo(currentPath);
+        distance += speed;
+        final float t = currentSegment.getTime((float) distance);
+        final float previousTime;
+        synchronized (this) {
+            previousTime = time;
+            time = t;
+        }
+        System.arraycopy(point, 0, step, 4, 4);
+        currentSegment.evaluate(t, point);
+        System.arraycopy(point, 0, step, 0, 4);
+        stepDuration = Math.min(t, 1F) - previousTime;
+        robot.setPos(point[0], point[1]);
+        if (point[2] != 0F || point[3] != 0F) {
+            robot.setAngle(Math.toDegrees(Math.atan2(point[2], -point[3])));
+        }
+        if (t >= 1F) {
             pathIterator.next();
-            if (!pathIterator.isDone()) {
+            synchronized (this) {
+                completeSegment();
+                if (pathIterator.isDone()) {
+                    complete = true;
+                    return;
+                }
                 currentSegment = getCurrentSegment();
                 assert currentSegment != null;
-                double startAngle = currentSegment.getStartAngle();
-                if (!Double.isNaN(startAngle)) robot.turnTo(Math.toDegrees(startAngle));
                 time = 0F;
             }
+            distance = 0.0;
+            currentSegment.evaluate(0F, point);
+            // turn outside of the lock, so that the path can be drawn while the Robot turns
+            double startAngle = currentSegment.getStartAngle();
+            if (!Double.isNaN(startAngle)) robot.turnTo(Math.toDegrees(startAngle));
         }
     }
 
+    /**
+     * Gets the piece of a segment of the path that was traced by the last call to
+     * {@link #incrementTime(double)}, e.g., to find the area that the piece may cover.
+     * This method must be invoked by the thread that moves the Robot along the path.
+     *
+     * @param result an array of length 8 that receives the position and derivative at the
+     *               end of the piece, followed by those at its start, as computed by
+     *               {@link Segment#evaluate(float, float[])}
+     * @return the time it took to trace the piece, measured like the time of the segment
+     */
+    public float getLastStep(float[] result) {
+        System.arraycopy(step, 0, result, 0, 8);
+        return stepDuration;
+    }
+
+    /**
+     * Adds the current segment, which the Robot has reached the end of, to the
+     * path traced so far.
+     */
+    private synchronized void completeSegment() {
+        currentSegment.addTo(currentPath);
+        numSegments++;
+        Rectangle2D.union(tracedBounds, segmentBounds, tracedBounds);
+        if (fill) {
+            if (currentSegment instanceof Move) {
+                closeSubpath();
+                currentSegment.addTo(openSubpath);
+            } else {
+                currentSegment.addTo(openSubpath);
+                openSubpathEmpty = false;
+                if (currentSegment instanceof Close) {
+                    closeSubpath();
+                    openSubpath.moveTo(startingPoint.getX(), startingPoint.getY());
+                }
+            }
+        } else {
+            if (pendingPath.getCurrentPoint() == null) pendingPath.moveTo(segmentStartX, segmentStartY);
+            if (currentSegment instanceof Close) {
+                // the raster does not know where the subpath started
+                pendingPath.lineTo(startingPoint.getX(), startingPoint.getY());
+            } else {
+                currentSegment.addTo(pendingPath);
+            }
+        }
+    }
+
+    private void closeSubpath() {
+        if (!openSubpathEmpty) {
+            closedSubpaths.append(openSubpath, false);
+            rasterStale = true;
+        }
+        openSubpath = new Path2D.Float();
+        openSubpathEmpty = true;
+    }
+
     /**
      * @return true if the robot has reached the end of the path.
      */
@@ -100,23 +229,162 @@ final public class DynamicPath implements Drawable {
         return pathIterator.isDone();
     }
 
-    private Path2D getPath2D() {
-        if (0.0 < time && time < 1.0) {
-            Path2D path = new Path2D.Float(currentPath);
-            return currentSegment.addTo(path, time);
-        } else {
-            return currentPath;
-        }
+    /**
+     * @return a copy of the part of the path that has been traced so far, without the
+     * segment in progress
+     */
+    public synchronized Path2D getTracedPath() {
+        return new Path2D.Float(currentPath);
+    }
+
+    /**
+     * @return true if the path is filled, false if its outline is drawn
+     */
+    public boolean isFill() {
+        return fill;
+    }
+
+    /**
+     * @return the line width used to draw the path
+     */
+    public int getLineSize() {
+        return lineSize;
+    }
+
+    /**
+     * @return the color used to draw the path
+     */
+    public Color getColor() {
+        return color;
+    }
+
+    /**
+     * @return bounds that contain the part of the path that has been traced so far,
+     * including the line width
+     */
+    public synchronized Rectangle getBounds() {
+        Rectangle result = tracedBounds.createUnion(segmentBounds).getBounds();
+        result.grow(lineSize, lineSize);
+        return result;
     }
 
     @Override
-    public void draw(Graphics2D g2) {
-        g2.setStroke(new BasicStroke(lineSize));
+    public synchronized void draw(Graphics2D g2) {
+        g2.setStroke(stroke);
         g2.setColor(color);
+        final boolean inSegment = !complete && 0F < time && time < 1F && !(currentSegment instanceof Move);
+        if (complete || numSegments < RASTER_THRESHOLD) {
+            raster = null;
+            rasterTransform = null;
+            if (fill) {
+                Path2D path = currentPath;
+                if (inSegment) {
+                    path = new Path2D.Float(currentPath);
+                    currentSegment.addTo(path, time);
+                }
+                g2.fill(path);
+            } else {
+                g2.draw(currentPath);
+                if (inSegment) drawTail(g2);
+            }
+            return;
+        }
+        updateRaster(g2);
+        if (raster != null) {
+            g2.setTransform(new AffineTransform()); // the raster is in device space
+            g2.drawImage(raster, rasterX, rasterY, null);
+            g2.setTransform(rasterTransform);
+        }
         if (fill) {
-            g2.fill(getPath2D());
+            if (openSubpath.getCurrentPoint() == null) return;
+            Path2D path = new Path2D.Float(openSubpath); // a copy of the subpath in progress only
+            if (inSegment) currentSegment.addTo(path, time);
+            g2.fill(path);
+        } else if (inSegment) {
+            drawTail(g2);
+        }
+    }
+
+    /**
+     * Draws the part of the current segment that has been traced.
+     */
+    private void drawTail(Graphics2D g2) {
+        Path2D tail = new Path2D.Float();
+        tail.moveTo(segmentStartX, segmentStartY);
+        g2.draw(currentSegment.addTo(tail, time));
+    }
+
+    /**
+     * Draws the segments completed since the previous frame in the raster (stroke mode),
+     * or redraws the closed subpaths in the raster if a subpath has been closed since the
+     * previous frame (fill mode). If the transform of the graphics context is not the one
+     * the raster was drawn for, the raster is drawn anew from all the segments completed.
+     */
+    private void updateRaster(Graphics2D g2) {
+        final AffineTransform transform = g2.getTransform();
+        final boolean redraw = !transform.equals(rasterTransform);
+        if (redraw) {
+            raster = null;
+            rasterTransform = transform;
+        }
+        final Shape shape;
+        if (fill) {
+            if (!rasterStale && !redraw) return;
+            rasterStale = false;
+            raster = null;
+            shape = closedSubpaths;
+        } else if (redraw) {
+            shape = currentPath;
         } else {
-            g2.draw(getPath2D());
+            if (pendingPath.getCurrentPoint() == null) return;
+            shape = pendingPath;
+        }
+        Rectangle2D bounds = shape.getBounds2D();
+        bounds.setRect(bounds.getX() - lineSize, bounds.getY() - lineSize,
+                bounds.getWidth() + 2 * lineSize, bounds.getHeight() + 2 * lineSize);
+        Rectangle needed = transform.createTransformedShape(bounds).getBounds();
+        needed.grow(2, 2);
+        final GraphicsConfiguration gc = g2.getDeviceConfiguration();
+        final Rectangle device = gc.getBounds();
+        needed = needed.intersection(gc.getDefaultTransform()
+                .createTransformedShape(new Rectangle(0, 0, device.width, device.height)).getBounds());
+        if (!needed.isEmpty()) {
+            ensureRasterContains(g2, needed);
+            Graphics2D rg2 = raster.createGraphics();
+            try {
+                rg2.setRenderingHints(g2.getRenderingHints());
+                rg2.translate(-rasterX, -rasterY);
+                rg2.transform(transform);
+                rg2.setStroke(stroke);
+                rg2.setColor(color);
+                if (fill) {
+                    rg2.fill(shape);
+                } else {
+                    rg2.draw(shape);
+                }
+            } finally {
+                rg2.dispose();
+            }
+        }
+        if (!fill) pendingPath.reset();
+    }
+
+    private void ensureRasterContains(Graphics2D g2, Rectangle needed) {
+        if (raster != null) {
+            Rectangle current = new Rectangle(rasterX, rasterY, raster.getWidth(), raster.getHeight());
+            if (current.contains(needed)) return;
+            needed = needed.union(current);
+        }
+        needed.grow(RASTER_MARGIN, RASTER_MARGIN);
+        BufferedImage grown = g2.getDeviceConfiguration()
+                .createCompatibleImage(needed.width, needed.height, Transparency.TRANSLUCENT);
+        if (raster != null) {
+            Graphics2D rg2 = grown.createGraphics();
+            rg2.drawImage(raster, rasterX - needed.x, rasterY - needed.y, null);
+            rg2.dispose();
         }
+        raster = grown;
+        rasterX = needed.x;
+        rasterY = needed.y;
     }
 }
@@ -2,11 +2,11 @@ package org.jointheleague.graphical.robot.curves;
 
 import org.jointheleague.graphical.robot.Robot;
 
-import java.awt.BasicStroke;
 import java.awt.Color;
 import java.awt.Graphics2D;
 import java.awt.geom.Line2D;
 import java.awt.geom.Path2D;
+import java.util.Arrays;
 
 final public class Line implements Drawable, Segment {
 
@@ -36,11 +36,47 @@ final public class Line implements Drawable, Segment {
 
     @Override
     public void draw(Graphics2D g2) {
-        g2.setStroke(new BasicStroke(lineSize));
+        g2.setStroke(StrokeCache.get(lineSize));
         g2.setColor(color);
         g2.draw(new Line2D.Float(startX, startY, ctrlPoints[0], ctrlPoints[1]));
     }
 
+    /**
+     * @return the x-coordinate of the segment's starting point
+     */
+    public float getStartX() {
+        return startX;
+    }
+
+    /**
+     * @return the y-coordinate of the segment's starting point
+     */
+    public float getStartY() {
+        return startY;
+    }
+
+    /**
+     * @return a new array of length 2 that contains the x- and y-coordinates of
+     * the segment's control points
+     */
+    public float[] getCtrlPoints() {
+        return Arrays.copyOf(ctrlPoints, 2);
+    }
+
+    /**
+     * @return the line width used to draw the segment
+     */
+    public int getLineSize() {
+        return lineSize;
+    }
+
+    /**
+     * @return the color used to draw the segment
+     */
+    public Color getColor() {
+        return color;
+    }
+
     @Override
     public Segment subSegment(float t) {
         if (1F <= t) return this;
@@ -59,6 +95,32 @@ final public class Line implements Drawable, Segment {
                 u * startY + t * ctrlPoints[1]);
     }
 
+    @Override
+    public void evaluate(float t, float[] result) {
+        Line.evaluate(startX, startY, ctrlPoints[0], ctrlPoints[1], t, result);
+    }
+
+    /**
+     * Evaluates the straight segment from <code>(x0, y0)</code> to <code>(x1, y1)</code>
+     * at time <code>t</code> as specified by {@link Segment#evaluate(float, float[])}.
+     * Shared by all segments that are traced along a straight line.
+     */
+    static void evaluate(float x0, float y0, float x1, float y1, float t, float[] result) {
+        if (t <= 0F) {
+            result[0] = x0;
+            result[1] = y0;
+        } else if (1F <= t) {
+            result[0] = x1;
+            result[1] = y1;
+        } else {
+            float u = 1F - t;
+            result[0] = u * x0 + t * x1;
+            result[1] = u * y0 + t * y1;
+        }
+        result[2] = x1 - x0;
+        result[3] = y1 - y0;
+    }
+
     @Override
     public double getStartAngle() {
         if (ctrlPoints[0] == startX && ctrlPoints[1] == startY) return Double.NaN;
@@ -41,6 +41,11 @@ final public class Move implements Segment {
                 u * startY + t * ctrlPoints[1]);
     }
 
+    @Override
+    public void evaluate(float t, float[] result) {
+        Line.evaluate(startX, startY, ctrlPoints[0], ctrlPoints[1], t, result);
+    }
+
     @Override
     public double getStartAngle() {
         if (ctrlPoints[0] == startX && ctrlPoints[1] == startY) return Double.NaN;
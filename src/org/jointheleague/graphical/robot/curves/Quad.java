@@ -5,6 +5,7 @@ import org.jointheleague.graphical.robot.Robot;
 import java.awt.*;
 import java.awt.geom.Path2D;
 import java.awt.geom.QuadCurve2D;
+import java.util.Arrays;
 
 final public class Quad implements Drawable, Segment {
 
@@ -14,6 +15,7 @@ final public class Quad implements Drawable, Segment {
     private final int lineSize;
     private final Color color;
     private final Line line;
+    private volatile ArcLengthTable arcLengthTable; // built when first needed
 
     /**
      * Constructor
@@ -36,13 +38,49 @@ final public class Quad implements Drawable, Segment {
 
     @Override
     public void draw(Graphics2D g2) {
-        g2.setStroke(new BasicStroke(lineSize));
+        g2.setStroke(StrokeCache.get(lineSize));
         g2.setColor(color);
         QuadCurve2D quad = new QuadCurve2D.Float(
                 startX, startY, ctrlPoints[0], ctrlPoints[1], ctrlPoints[2], ctrlPoints[3]);
         g2.draw(quad);
     }
 
+    /**
+     * @return the x-coordinate of the segment's starting point
+     */
+    public float getStartX() {
+        return startX;
+    }
+
+    /**
+     * @return the y-coordinate of the segment's starting point
+     */
+    public float getStartY() {
+        return startY;
+    }
+
+    /**
+     * @return a new array of length 4 that contains the x- and y-coordinates of
+     * the segment's control points
+     */
+    public float[] getCtrlPoints() {
+        return Arrays.copyOf(ctrlPoints, 4);
+    }
+
+    /**
+     * @return the line width used to draw the segment
+     */
+    public int getLineSize() {
+        return lineSize;
+    }
+
+    /**
+     * @return the color used to draw the segment
+     */
+    public Color getColor() {
+        return color;
+    }
+
     @Override
     public Segment subSegment(float t) {
         Robot.Pos pos1 = line.getPos(t);
@@ -69,6 +107,24 @@ final public class Quad implements Drawable, Segment {
 
     }
 
+    @Override
+    public void evaluate(float t, float[] result) {
+        if (t <= 0F) {
+            t = 0F;
+        } else if (1F <= t) {
+            t = 1F;
+        }
+        final float u = 1F - t;
+        final float c0 = u * u;
+        final float c1 = 2 * u * t;
+        final float c2 = t * t;
+        result[0] = c0 * startX + c1 * ctrlPoints[0] + c2 * ctrlPoints[2];
+        result[1] = c0 * startY + c1 * ctrlPoints[1] + c2 * ctrlPoints[3];
+        // B'(t) = 2 (u (P1 - P0) + t (P2 - P1))
+        result[2] = 2 * (u * (ctrlPoints[0] - startX) + t * (ctrlPoints[2] - ctrlPoints[0]));
+        result[3] = 2 * (u * (ctrlPoints[1] - startY) + t * (ctrlPoints[3] - ctrlPoints[1]));
+    }
+
     @Override
     public double getStartAngle() {
         if (ctrlPoints[0] == startX && ctrlPoints[1] == startY) return Double.NaN;
@@ -85,16 +141,45 @@ final public class Quad implements Drawable, Segment {
     public double getAngle(float time) {
         if (time <= 0F) return getStartAngle();
         if (1F <= time) return getEndAngle();
-        return subSegment(time).getEndAngle();
+        // the direction of B'(time)
+        final float u = 1F - time;
+        final float dx = u * (ctrlPoints[0] - startX) + time * (ctrlPoints[2] - ctrlPoints[0]);
+        final float dy = u * (ctrlPoints[1] - startY) + time * (ctrlPoints[3] - ctrlPoints[1]);
+        if (dx == 0F && dy == 0F) return Double.NaN;
+        return Math.atan2(dx, -dy);
+    }
+
+    @Override
+    public double getCurvature(float time) {
+        final float t = Math.min(Math.max(0F, time), 1F);
+        final float u = 1F - t;
+        final double dx = 2 * (u * (ctrlPoints[0] - startX) + t * (ctrlPoints[2] - ctrlPoints[0]));
+        final double dy = 2 * (u * (ctrlPoints[1] - startY) + t * (ctrlPoints[3] - ctrlPoints[1]));
+        // B''(t) = 2 (P2 - 2 P1 + P0)
+        final double ddx = 2 * (ctrlPoints[2] - 2 * ctrlPoints[0] + startX);
+        final double ddy = 2 * (ctrlPoints[3] - 2 * ctrlPoints[1] + startY);
+        final double speedSquared = dx * dx + dy * dy;
+        if (speedSquared == 0.0) return Double.NaN;
+        return (dx * ddy - dy * ddx) / (speedSquared * Math.sqrt(speedSquared));
     }
 
     @Override
     public float getSize() {
-        double a = ctrlPoints[0] - startX;
-        double b = ctrlPoints[1] - startY;
-        double c = ctrlPoints[2] - ctrlPoints[0];
-        double d = ctrlPoints[3] - ctrlPoints[1];
-        return (float) (Math.sqrt(a * a + b * b) + Math.sqrt(c * c + d * d));
+        return getArcLengthTable().getLength();
+    }
+
+    @Override
+    public float getTime(float distance) {
+        return getArcLengthTable().getTime(distance);
+    }
+
+    private ArcLengthTable getArcLengthTable() {
+        ArcLengthTable table = arcLengthTable;
+        if (table == null) {
+            table = new ArcLengthTable(this);
+            arcLengthTable = table;
+        }
+        return table;
     }
 
     @Override
@@ -1,6 +1,5 @@
 package org.jointheleague.graphical.robot.curves;
 
-import com.sun.istack.internal.NotNull;
 import org.jointheleague.graphical.robot.Robot;
 
 import java.awt.geom.Path2D;
@@ -27,10 +26,40 @@ public interface Segment {
      */
     Robot.Pos getPos(float t);
 
+    /**
+     * Evaluates the position of the segment and its derivative at time <code>t</code>
+     * without allocating any objects, which makes it suitable for being called on
+     * every tick. The x- and y-coordinates of the position are stored in
+     * <code>result[0]</code> and <code>result[1]</code>, and the x- and y-coordinates
+     * of the derivative with respect to <code>t</code> in <code>result[2]</code> and
+     * <code>result[3]</code>. The derivative is zero where the direction of the
+     * segment is undefined. Values of <code>t</code> outside of <code>[0, 1]</code>
+     * are clamped as in {@link #getPos(float)}.
+     * <p>
+     * The default implementation is based on {@link #getPos(float)} and
+     * {@link #getAngle(float)}, and stores a unit vector as the derivative.
+     * </p>
+     *
+     * @param t      a float value, normally between 0 and 1
+     * @param result an array of length at least 4 in which the result is stored
+     */
+    default void evaluate(float t, float[] result) {
+        Robot.Pos pos = getPos(t);
+        result[0] = pos.getX();
+        result[1] = pos.getY();
+        double angle = getAngle(t);
+        if (Double.isNaN(angle)) {
+            result[2] = 0F;
+            result[3] = 0F;
+        } else {
+            result[2] = (float) Math.sin(angle);
+            result[3] = (float) -Math.cos(angle);
+        }
+    }
+
     /**
      * @return the angle in radians of the segment at the start
      */
-    @NotNull
     double getStartAngle();
 
     /**
@@ -46,14 +75,49 @@ public interface Segment {
      */
     double getAngle(float time);
 
+    /**
+     * Gets the signed curvature of the segment, i.e., the rate at which its angle
+     * changes per unit of distance travelled, at the position specified by
+     * <code>time</code>. The curvature is positive where the segment turns
+     * clockwise on the screen, which is the direction of increasing angles, and
+     * its inverse is the radius of the circle that best fits the segment there.
+     * Does not allocate any objects.
+     * <p>
+     * The default implementation returns 0, which is the curvature of straight segments.
+     * </p>
+     *
+     * @param time the time that specifies a position on the segment
+     * @return the curvature in radians per pixel, or NaN where the angle of the
+     * segment is undefined
+     */
+    default double getCurvature(float time) {
+        return 0.0;
+    }
+
     /**
      * The time a robot uses to trace a segment at a given speed is
      * proportional to the segment's size.
      *
-     * @return an estimate of the length of the segment
+     * @return the length of the segment
      */
     float getSize();
 
+    /**
+     * Gets the time at which a robot that traces this segment at constant speed
+     * has travelled a given distance from the start of the segment. Does not
+     * allocate any objects, so that it may be called on every tick.
+     * <p>
+     * The default implementation assumes that the distance travelled is
+     * proportional to the time, which holds for straight segments.
+     * </p>
+     *
+     * @param distance the distance travelled
+     * @return the time, which is 1 or greater once the whole segment has been travelled
+     */
+    default float getTime(float distance) {
+        return distance / getSize();
+    }
+
     /**
      * Adds the Segment to the end of a Path2D
      *
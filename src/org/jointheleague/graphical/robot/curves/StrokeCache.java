@@ -0,0 +1,52 @@
+package org.jointheleague.graphical.robot.curves;
+
+import java.awt.*;
+
+/**
+ * The strokes used to draw lines of a given width. Since strokes are
+ * immutable, the strokes of the usual widths are created once and shared, so
+ * that drawing a segment does not allocate a new stroke each time.
+ * <p>
+ * Lines that are at least {@value #MIN_ROUND_WIDTH} pixels wide have round
+ * caps and joins. A Robot that draws without lifting its pen commits one
+ * segment per move, and each segment is stroked on its own, so the corners
+ * of a polygon are made of the caps of two segments: round caps meet in a
+ * round join whatever the angle, whereas square caps leave a notch on the
+ * outside of the corner and stick out on the inside. Thinner lines keep the
+ * default square caps and miter joins, which Java2D strokes about three
+ * times as fast, since the notch is then less than a pixel wide.
+ * </p>
+ */
+public final class StrokeCache {
+
+    /**
+     * The width from which lines have round caps and joins.
+     */
+    public static final int MIN_ROUND_WIDTH = 3;
+
+    private static final int NUM_CACHED = 64;
+    private static final BasicStroke[] STROKES = new BasicStroke[NUM_CACHED];
+
+    static {
+        for (int i = 0; i < NUM_CACHED; i++) {
+            STROKES[i] = create(i);
+        }
+    }
+
+    private StrokeCache() {
+    }
+
+    /**
+     * @param lineSize the width of the line
+     * @return a stroke with the given width, with round caps and joins if the
+     * width is at least {@value #MIN_ROUND_WIDTH}, and the default cap and join otherwise
+     */
+    public static BasicStroke get(int lineSize) {
+        return 0 <= lineSize && lineSize < NUM_CACHED ? STROKES[lineSize] : create(lineSize);
+    }
+
+    private static BasicStroke create(int lineSize) {
+        return lineSize < MIN_ROUND_WIDTH ? new BasicStroke(lineSize)
+                : new BasicStroke(lineSize, BasicStroke.CAP_ROUND, BasicStroke.JOIN_ROUND);
+    }
+}